@@ -2,8 +2,10 @@ package com.yoanesber.order_payment_rabbitmq;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class OrderPaymentRabbitmqApplication {
 
 	public static void main(String[] args) {
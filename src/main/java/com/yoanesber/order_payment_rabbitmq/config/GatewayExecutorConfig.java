@@ -0,0 +1,22 @@
+package com.yoanesber.order_payment_rabbitmq.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * GatewayExecutorConfig defines the executor that runs payment gateway calls.
+ * Each gateway call gets its own virtual thread, so thousands of in-flight calls blocked on the gateway
+ * cost a few KB of heap each instead of a platform thread.
+ */
+
+@Configuration
+public class GatewayExecutorConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService gatewayThreadExecutor() {
+        // Virtual threads are only created when a task is submitted, so the executor costs nothing while unused
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gateway-", 0).factory());
+    }
+}
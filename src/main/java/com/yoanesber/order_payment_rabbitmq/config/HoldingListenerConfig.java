@@ -0,0 +1,100 @@
+package com.yoanesber.order_payment_rabbitmq.config;
+
+import java.lang.reflect.Method;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.DirectRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.listener.MethodRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.util.ReflectionUtils;
+
+import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+import com.yoanesber.order_payment_rabbitmq.gateway.PaymentGateway;
+import com.yoanesber.order_payment_rabbitmq.gateway.PaymentGatewayRegistry;
+import com.yoanesber.order_payment_rabbitmq.listener.PaymentRequestListener;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * HoldingListenerConfig registers one listener container per rate-limit holding queue, each running
+ * PaymentRequestListener.handleParkedRequest with the consumers that queue's own gateway needs.
+ * A consumer takes a token and then waits for the gateway call, so draining at the rate limit needs rate-limit x timeout
+ * consumers. The count is capped at the gateway's max-concurrency and at max-consumers-per-queue, since every waiting
+ * consumer holds an amqp-client thread. A gateway without a rate limit never parks a request, so its queue gets one consumer.
+ */
+
+@Configuration
+public class HoldingListenerConfig implements RabbitListenerConfigurer {
+
+    @Value("${spring.rabbitmq.order-payment.payment-request-queue-name:order.payment.requests.queue}")
+    private String paymentRequestQueueName;
+
+    // Consumers per holding queue; zero or less derives them from the gateway's rate limit and timeout
+    @Value("${spring.rabbitmq.order-payment.listener.holding.consumers-per-queue:0}")
+    private int consumersPerQueue;
+
+    @Value("${spring.rabbitmq.order-payment.listener.holding.max-consumers-per-queue:8}")
+    private int maxConsumersPerQueue;
+
+    private final PaymentRequestListener paymentRequestListener;
+
+    private final PaymentGatewayRegistry paymentGatewayRegistry;
+
+    private final DirectRabbitListenerContainerFactory holdingQueueFactory;
+
+    public HoldingListenerConfig(PaymentRequestListener paymentRequestListener, PaymentGatewayRegistry paymentGatewayRegistry,
+        @Qualifier("holdingQueueFactory") DirectRabbitListenerContainerFactory holdingQueueFactory) {
+        this.paymentRequestListener = paymentRequestListener;
+        this.paymentGatewayRegistry = paymentGatewayRegistry;
+        this.holdingQueueFactory = holdingQueueFactory;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (maxConsumersPerQueue <= 0) {
+            throw new IllegalStateException("Invalid holding listener settings: max-consumers-per-queue must be positive");
+        }
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        DefaultMessageHandlerMethodFactory messageHandlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+        messageHandlerMethodFactory.afterPropertiesSet();
+
+        Method handleParkedRequest = ReflectionUtils.findMethod(PaymentRequestListener.class, "handleParkedRequest",
+            CreateOrderPaymentRequestDTO.class, String.class, Long.class, String.class, Long.class);
+        if (handleParkedRequest == null) {
+            throw new IllegalStateException("PaymentRequestListener has no handleParkedRequest method");
+        }
+
+        for (PaymentMethod paymentMethod : PaymentMethod.values()) {
+            MethodRabbitListenerEndpoint endpoint = new MethodRabbitListenerEndpoint();
+            endpoint.setId("paymentHoldingListener." + paymentMethod.getKey());
+            endpoint.setQueueNames(paymentRequestQueueName + ".holding." + paymentMethod.getKey());
+            endpoint.setBean(paymentRequestListener);
+            endpoint.setMethod(handleParkedRequest);
+            endpoint.setMessageHandlerMethodFactory(messageHandlerMethodFactory);
+
+            // For a direct container, the endpoint concurrency is the number of consumers of its queue
+            endpoint.setConcurrency(String.valueOf(this.consumersPerQueue(paymentGatewayRegistry.getGateway(paymentMethod))));
+            registrar.registerEndpoint(endpoint, holdingQueueFactory);
+        }
+    }
+
+    private int consumersPerQueue(PaymentGateway paymentGateway) {
+        if (consumersPerQueue > 0) {
+            return consumersPerQueue;
+        }
+        if (paymentGateway == null || paymentGateway.getRateLimit() <= 0) {
+            return 1;
+        }
+
+        // More than max-concurrency would only be rejected by the gateway's bulkhead
+        long needed = (long) Math.ceil(paymentGateway.getRateLimit() * paymentGateway.getTimeout() / 1000.0);
+        return (int) Math.max(1, Math.min(needed, Math.min(paymentGateway.getMaxConcurrency(), maxConsumersPerQueue)));
+    }
+}
@@ -0,0 +1,43 @@
+package com.yoanesber.order_payment_rabbitmq.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import com.yoanesber.order_payment_rabbitmq.converter.PayloadSerializer;
+
+/**
+ * JacksonConfig makes Spring Boot's ObjectMapper the single tuned mapper of the application.
+ * The controller (through Spring MVC), the outbox, the message converters and the listeners all serialize with it,
+ * or, for the Smile wire format, with a Smile mapper built from the same Jackson2ObjectMapperBuilder.
+ * With order-payment.serialization.blackbird-enabled=true, both mappers register the Blackbird module,
+ * which replaces reflective property access with generated lambdas.
+ */
+
+@Configuration
+public class JacksonConfig {
+
+    @Value("${order-payment.serialization.blackbird-enabled:false}")
+    private boolean blackbirdEnabled;
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer blackbirdCustomizer() {
+        // Register the module after the builder has installed its own modules, so none of those are replaced
+        return builder -> {
+            if (blackbirdEnabled) {
+                builder.postConfigurer(mapper -> mapper.registerModule(new BlackbirdModule()));
+            }
+        };
+    }
+
+    @Bean
+    public PayloadSerializer payloadSerializer(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        return new PayloadSerializer(objectMapper, objectMapperBuilder.factory(new SmileFactory()).build());
+    }
+}
@@ -1,40 +1,302 @@
 package com.yoanesber.order_payment_rabbitmq.config;
 
 import org.aopalliance.aop.Advice;
+import org.springframework.amqp.rabbit.config.AbstractRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.DirectRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.postprocessor.DelegatingDecompressingPostProcessor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.yoanesber.order_payment_rabbitmq.publisher.RecordHeadersBatchingStrategy;
+
 /**
  * ListenerFactoryConfig is a configuration class that defines two RabbitMQ listener container factories.
  * These factories are used to create listener containers for processing messages from RabbitMQ queues.
  * The successQueueFactory is configured with retry logic for successful message processing,
  * while the failedQueueFactory is configured for failed message processing without retries.
+ * The requestQueueFactory consumes asynchronously submitted payment requests and converts them from JSON or Smile.
+ * The holdingQueueFactory drains the rate-limit holding queues with a prefetch of one per consumer, so parked requests
+ * stay in the broker until their gateway has a token for them; HoldingListenerConfig sizes the consumers of each queue.
+ * De-batching is enabled on the success and failed factories, so batches sent by BatchingMessagePublisher reach the listener one message at a time;
+ * RecordHeadersBatchingStrategy gives every message its own headers back.
+ * The successQueueBatchFactory and failedQueueBatchFactory deliver typed batches of up to batch-size messages
+ * to batch listeners and acknowledge each batch once.
+ * Every factory decompresses gzip, zip and deflate encoded messages before de-batching and conversion,
+ * whether or not this instance compresses what it publishes; uncompressed messages pass through unchanged.
+ * The converting factories share the payment message converter (MessageConverterConfig), which decodes each message by its content type.
+ * Prefetch, the consumer range and the consumer start/stop triggers are configurable per queue;
+ * ConsumerAutoScaler can additionally widen the consumers based on queue depth.
+ * The successQueueFactory and failedQueueFactory can each be switched to a DirectRabbitListenerContainerFactory
+ * (container-type=direct), which invokes the listener on the amqp-client thread instead of handing every message
+ * over to a consumer thread; the retry advice chain is applied the same way to both container types.
+ * When the success queue is sharded, successQueueFactory and successQueueBatchFactory always create direct containers,
+ * so every shard gets its own consumer.
  */
 
 @Configuration
 public class ListenerFactoryConfig {
+
+    @Value("${spring.rabbitmq.order-payment.listener.batch-size:50}")
+    private int batchSize;
+
+    @Value("${spring.rabbitmq.order-payment.listener.batch-receive-timeout:1000}")
+    private long batchReceiveTimeout;
+
+    // Consumer settings for the payment success queue
+    @Value("${spring.rabbitmq.order-payment.listener.success.prefetch:250}")
+    private int successPrefetch;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.concurrent-consumers:1}")
+    private int successConcurrentConsumers;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.max-concurrent-consumers:1}")
+    private int successMaxConcurrentConsumers;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.consecutive-active-trigger:10}")
+    private int successConsecutiveActiveTrigger;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.consecutive-idle-trigger:10}")
+    private int successConsecutiveIdleTrigger;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.start-consumer-min-interval:10000}")
+    private long successStartConsumerMinInterval;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.stop-consumer-min-interval:60000}")
+    private long successStopConsumerMinInterval;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.container-type:simple}")
+    private String successContainerType;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.consumers-per-queue:1}")
+    private int successConsumersPerQueue;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.monitor-interval:30000}")
+    private long successMonitorInterval;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.messages-per-ack:1}")
+    private int successMessagesPerAck;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.ack-timeout:20000}")
+    private long successAckTimeout;
+
+    @Value("${spring.rabbitmq.order-payment.sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    // Consumer settings for the payment failed queue
+    @Value("${spring.rabbitmq.order-payment.listener.failed.prefetch:250}")
+    private int failedPrefetch;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.concurrent-consumers:1}")
+    private int failedConcurrentConsumers;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.max-concurrent-consumers:1}")
+    private int failedMaxConcurrentConsumers;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.consecutive-active-trigger:10}")
+    private int failedConsecutiveActiveTrigger;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.consecutive-idle-trigger:10}")
+    private int failedConsecutiveIdleTrigger;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.start-consumer-min-interval:10000}")
+    private long failedStartConsumerMinInterval;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.stop-consumer-min-interval:60000}")
+    private long failedStopConsumerMinInterval;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.container-type:simple}")
+    private String failedContainerType;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.consumers-per-queue:1}")
+    private int failedConsumersPerQueue;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.monitor-interval:30000}")
+    private long failedMonitorInterval;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.messages-per-ack:1}")
+    private int failedMessagesPerAck;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.ack-timeout:20000}")
+    private long failedAckTimeout;
+
+    // Picks the decompressor from the content encoding the publisher's compressing post-processor set
+    private final DelegatingDecompressingPostProcessor decompressor = new DelegatingDecompressingPostProcessor();
+
+    // Splits the batches of BatchingMessagePublisher and gives every message its own headers back
+    private final RecordHeadersBatchingStrategy batchingStrategy = new RecordHeadersBatchingStrategy();
+
     @Bean
-    public SimpleRabbitListenerContainerFactory successQueueFactory(
+    public AbstractRabbitListenerContainerFactory<?> successQueueFactory(
             ConnectionFactory connectionFactory,
             @Qualifier("successQueueRetryAdvice") Advice retryAdvice) {
 
+        // Sharded queues always use the direct container: a simple container's consumers each subscribe to every shard,
+        // and with single-active-consumer the first one would end up active on all of them
+        if ("direct".equalsIgnoreCase(successContainerType) || shardingEnabled) {
+            DirectRabbitListenerContainerFactory factory = new DirectRabbitListenerContainerFactory();
+            factory.setConnectionFactory(connectionFactory);
+            factory.setAfterReceivePostProcessors(decompressor);
+            factory.setAdviceChain(retryAdvice);
+            factory.setDeBatchingEnabled(true); // Split producer-side batches back into individual messages
+            factory.setBatchingStrategy(batchingStrategy);
+            factory.setPrefetchCount(successPrefetch);
+            factory.setConsumersPerQueue(successConsumersPerQueue);
+            factory.setMonitorInterval(successMonitorInterval);
+            factory.setMessagesPerAck(successMessagesPerAck);
+            factory.setAckTimeout(successAckTimeout);
+            return factory;
+        }
+
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
+        factory.setAfterReceivePostProcessors(decompressor);
         factory.setAdviceChain(retryAdvice);
+        factory.setDeBatchingEnabled(true); // Split producer-side batches back into individual messages
+        factory.setBatchingStrategy(batchingStrategy);
+        this.applySuccessQueueSettings(factory);
         return factory;
     }
 
     @Bean
-    public SimpleRabbitListenerContainerFactory failedQueueFactory(
+    public AbstractRabbitListenerContainerFactory<?> failedQueueFactory(
             ConnectionFactory connectionFactory,
             @Qualifier("failedQueueRetryAdvice") Advice retryAdvice) {
 
+        if ("direct".equalsIgnoreCase(failedContainerType)) {
+            DirectRabbitListenerContainerFactory factory = new DirectRabbitListenerContainerFactory();
+            factory.setConnectionFactory(connectionFactory);
+            factory.setAfterReceivePostProcessors(decompressor);
+            factory.setAdviceChain(retryAdvice);
+            factory.setDeBatchingEnabled(true); // Split producer-side batches back into individual messages
+            factory.setBatchingStrategy(batchingStrategy);
+            factory.setPrefetchCount(failedPrefetch);
+            factory.setConsumersPerQueue(failedConsumersPerQueue);
+            factory.setMonitorInterval(failedMonitorInterval);
+            factory.setMessagesPerAck(failedMessagesPerAck);
+            factory.setAckTimeout(failedAckTimeout);
+            return factory;
+        }
+
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAfterReceivePostProcessors(decompressor);
+        factory.setAdviceChain(retryAdvice);
+        factory.setDeBatchingEnabled(true); // Split producer-side batches back into individual messages
+        factory.setBatchingStrategy(batchingStrategy);
+        this.applyFailedQueueSettings(factory);
+        return factory;
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory requestQueueFactory(ConnectionFactory connectionFactory,
+            MessageConverter paymentMessageConverter) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
+        factory.setAfterReceivePostProcessors(decompressor);
+        factory.setMessageConverter(paymentMessageConverter);
+
+        // A payment request is never redelivered automatically, since re-running it could charge the customer twice
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+
+    @Bean
+    public DirectRabbitListenerContainerFactory holdingQueueFactory(ConnectionFactory connectionFactory,
+            MessageConverter paymentMessageConverter) {
+        // A direct container gives every holding queue its own consumers, so waiting for a PayPal token
+        // never holds up parked card payments
+        DirectRabbitListenerContainerFactory factory = new DirectRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAfterReceivePostProcessors(decompressor);
+        factory.setMessageConverter(paymentMessageConverter);
+        factory.setPrefetchCount(1);
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+
+    @Bean
+    public AbstractRabbitListenerContainerFactory<?> successQueueBatchFactory(
+            ConnectionFactory connectionFactory,
+            @Qualifier("successQueueRetryAdvice") Advice retryAdvice,
+            MessageConverter paymentMessageConverter) {
+
+        // Sharded queues need the direct container here too, so every shard keeps its own active consumer.
+        // A direct container cannot collect consumer-side batches; the listener gets the producer-side batches
+        // of BatchingMessagePublisher as one list, and any other message as a list of one.
+        if (shardingEnabled) {
+            DirectRabbitListenerContainerFactory factory = new DirectRabbitListenerContainerFactory();
+            factory.setConnectionFactory(connectionFactory);
+            factory.setAfterReceivePostProcessors(decompressor);
+            factory.setAdviceChain(retryAdvice);
+            factory.setDeBatchingEnabled(true);
+            factory.setBatchingStrategy(batchingStrategy);
+            factory.setBatchListener(true);
+            factory.setMessageConverter(paymentMessageConverter);
+            factory.setPrefetchCount(successPrefetch);
+            factory.setConsumersPerQueue(successConsumersPerQueue);
+            factory.setMonitorInterval(successMonitorInterval);
+            return factory;
+        }
+
+        SimpleRabbitListenerContainerFactory factory = this.batchFactory(connectionFactory, retryAdvice, paymentMessageConverter);
+        this.applySuccessQueueSettings(factory);
+        return factory;
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory failedQueueBatchFactory(
+            ConnectionFactory connectionFactory,
+            @Qualifier("failedQueueRetryAdvice") Advice retryAdvice,
+            MessageConverter paymentMessageConverter) {
+
+        SimpleRabbitListenerContainerFactory factory = this.batchFactory(connectionFactory, retryAdvice, paymentMessageConverter);
+        this.applyFailedQueueSettings(factory);
+        return factory;
+    }
+
+    private SimpleRabbitListenerContainerFactory batchFactory(ConnectionFactory connectionFactory, Advice retryAdvice,
+            MessageConverter messageConverter) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAfterReceivePostProcessors(decompressor);
         factory.setAdviceChain(retryAdvice);
+        factory.setDeBatchingEnabled(true);
+        factory.setBatchingStrategy(batchingStrategy);
+
+        // Hand the listener a List of up to batchSize messages, collected for at most batchReceiveTimeout ms.
+        // With the default AUTO acknowledge mode the whole batch is acknowledged once, after the listener returns.
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchReceiveTimeout);
+
+        // Convert each message body to the entity named in the __TypeId__ header
+        factory.setMessageConverter(messageConverter);
         return factory;
     }
+
+    private void applySuccessQueueSettings(SimpleRabbitListenerContainerFactory factory) {
+        factory.setPrefetchCount(successPrefetch);
+        factory.setConcurrentConsumers(successConcurrentConsumers);
+        factory.setMaxConcurrentConsumers(successMaxConcurrentConsumers);
+        factory.setConsecutiveActiveTrigger(successConsecutiveActiveTrigger);
+        factory.setConsecutiveIdleTrigger(successConsecutiveIdleTrigger);
+        factory.setStartConsumerMinInterval(successStartConsumerMinInterval);
+        factory.setStopConsumerMinInterval(successStopConsumerMinInterval);
+    }
+
+    private void applyFailedQueueSettings(SimpleRabbitListenerContainerFactory factory) {
+        factory.setPrefetchCount(failedPrefetch);
+        factory.setConcurrentConsumers(failedConcurrentConsumers);
+        factory.setMaxConcurrentConsumers(failedMaxConcurrentConsumers);
+        factory.setConsecutiveActiveTrigger(failedConsecutiveActiveTrigger);
+        factory.setConsecutiveIdleTrigger(failedConsecutiveIdleTrigger);
+        factory.setStartConsumerMinInterval(failedStartConsumerMinInterval);
+        factory.setStopConsumerMinInterval(failedStopConsumerMinInterval);
+    }
 }
@@ -0,0 +1,54 @@
+package com.yoanesber.order_payment_rabbitmq.config;
+
+import org.springframework.amqp.support.converter.AbstractJackson2MessageConverter;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
+import org.springframework.amqp.support.converter.DefaultJackson2JavaTypeMapper;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.yoanesber.order_payment_rabbitmq.converter.PayloadSerializer;
+import com.yoanesber.order_payment_rabbitmq.converter.SmileMessageConverter;
+import com.yoanesber.order_payment_rabbitmq.converter.WireFormat;
+
+/**
+ * MessageConverterConfig defines the message converter shared by RabbitTemplate and the converting listener factories.
+ * Outgoing messages are encoded in the format selected by spring.rabbitmq.order-payment.wire-format (json or smile).
+ * Incoming messages are decoded by the converter registered for their content type, so a consumer reads JSON and Smile
+ * alike; consumers can therefore be upgraded first, and the producers switched to smile once every consumer is on this version.
+ * Messages without a known content type are decoded with the converter of the configured wire format.
+ * Both converters use the mappers of PayloadSerializer, so events are serialized with the same settings as the REST API.
+ */
+
+@Configuration
+public class MessageConverterConfig {
+
+    @Value("${spring.rabbitmq.order-payment.wire-format:json}")
+    private String wireFormat;
+
+    @Bean
+    public ContentTypeDelegatingMessageConverter paymentMessageConverter(PayloadSerializer payloadSerializer) {
+        AbstractJackson2MessageConverter jsonConverter = this.withTrustedEntities(
+            new Jackson2JsonMessageConverter(payloadSerializer.getObjectMapper(WireFormat.JSON)));
+        AbstractJackson2MessageConverter smileConverter = this.withTrustedEntities(
+            new SmileMessageConverter(payloadSerializer.getObjectMapper(WireFormat.SMILE)));
+
+        // Outgoing messages are converted with fresh MessageProperties, whose default content type is not registered here,
+        // so they always go to the default converter
+        ContentTypeDelegatingMessageConverter messageConverter = new ContentTypeDelegatingMessageConverter(
+            WireFormat.valueOf(wireFormat.toUpperCase()) == WireFormat.SMILE ? smileConverter : jsonConverter);
+        messageConverter.addDelegate(WireFormat.JSON.getContentType(), jsonConverter);
+        messageConverter.addDelegate(WireFormat.SMILE.getContentType(), smileConverter);
+        return messageConverter;
+    }
+
+    private AbstractJackson2MessageConverter withTrustedEntities(AbstractJackson2MessageConverter converter) {
+        // Let the batch listeners convert each message body to the entity named in the __TypeId__ header;
+        // listeners that declare a payload type keep converting to that type
+        DefaultJackson2JavaTypeMapper typeMapper = new DefaultJackson2JavaTypeMapper();
+        typeMapper.setTrustedPackages("com.yoanesber.order_payment_rabbitmq.entity");
+        converter.setJavaTypeMapper(typeMapper);
+        return converter;
+    }
+}
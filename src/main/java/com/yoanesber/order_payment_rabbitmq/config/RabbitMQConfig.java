@@ -1,21 +1,30 @@
 package com.yoanesber.order_payment_rabbitmq.config;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+import com.yoanesber.order_payment_rabbitmq.publisher.ThresholdCompressingPostProcessor;
+import com.yoanesber.order_payment_rabbitmq.publisher.TimedCorrelationData;
+
 /*
  * RabbitMQConfig is a configuration class for setting up RabbitMQ connections, exchanges, queues, and bindings.
  * It uses Spring AMQP to manage RabbitMQ resources and provides a RabbitTemplate for sending messages.
@@ -74,6 +83,12 @@ public class RabbitMQConfig {
     @Value("${spring.rabbitmq.order-payment.payment-failed-routing-key}")
     private String paymentFailedRoutingKey;
 
+    @Value("${spring.rabbitmq.order-payment.payment-request-queue-name:order.payment.requests.queue}")
+    private String paymentRequestQueueName;
+
+    @Value("${spring.rabbitmq.order-payment.payment-request-routing-key:order.payment.requests}")
+    private String paymentRequestRoutingKey;
+
     // Dead Letter Exchange (DLX) configuration
     @Value("${spring.rabbitmq.order-payment.exchange-dlx-name}")
     private String paymentExchangeDlxName;
@@ -90,6 +105,44 @@ public class RabbitMQConfig {
     @Value("${spring.rabbitmq.order-payment.dlq-failed-routing-key}")
     private String deadLetterRoutingKeyFailed;
 
+    @Value("${spring.rabbitmq.order-payment.dlq-request-queue-name:order.payment.requests.dlq}")
+    private String deadLetterQueueRequestName;
+
+    @Value("${spring.rabbitmq.order-payment.dlq-request-routing-key:order.payment.requests.dlq}")
+    private String deadLetterRoutingKeyRequest;
+
+    @Value("${spring.rabbitmq.order-payment.parking-lot-queue-name:order.payment.parking-lot.queue}")
+    private String parkingLotQueueName;
+
+    @Value("${spring.rabbitmq.order-payment.parking-lot-routing-key:order.payment.parking-lot}")
+    private String parkingLotRoutingKey;
+
+    // Sharded payment success queue configuration
+    @Value("${spring.rabbitmq.order-payment.sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    @Value("${spring.rabbitmq.order-payment.sharding.shard-count:4}")
+    private int shardCount;
+
+    // Delayed retry configuration
+    @Value("${spring.rabbitmq.order-payment.retry.mode:in-container}")
+    private String retryMode;
+
+    @Value("${spring.rabbitmq.order-payment.retry.delays:1000,5000,15000}")
+    private long[] retryDelays;
+
+    @Value("${spring.rabbitmq.order-payment.exchange-retry-name:order.payment.retry.exchange}")
+    private String paymentExchangeRetryName;
+
+    @Value("${spring.rabbitmq.order-payment.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    @Value("${spring.rabbitmq.order-payment.compression.threshold:1024}")
+    private int compressionThreshold;
+
+    @Value("${spring.rabbitmq.order-payment.compression.level:1}")
+    private int compressionLevel;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /*=== Payment Exchange Configuration ===
@@ -121,6 +174,55 @@ public class RabbitMQConfig {
         return BindingBuilder.bind(paymentSuccessQueue()).to(paymentExchange()).with(paymentSuccessRoutingKey);
     }
 
+    /*=== Sharded Payment Success Configuration ===
+     * With spring.rabbitmq.order-payment.sharding.enabled=true, MessagePublisher hashes the orderId of a success event
+     * to one of shard-count routing keys (<routingKey>.shard.<n>), each bound to its own queue (<queueName>.shard.<n>).
+     * Every shard queue has a single active consumer, so the events of one order are processed strictly in order,
+     * while the shards are consumed in parallel.
+     */
+    @Bean
+    public Declarables paymentSuccessShardDeclarables() {
+        List<Declarable> declarables = new ArrayList<>();
+        if (!shardingEnabled) {
+            return new Declarables(declarables);
+        }
+
+        for (int shard = 0; shard < shardCount; shard++) {
+            // Shard queues dead-letter to the same DLQ as the payment success queue
+            Map<String, Object> args = new HashMap<>();
+            args.put("x-dead-letter-exchange", paymentExchangeDlxName);
+            args.put("x-dead-letter-routing-key", deadLetterRoutingKeySuccess);
+            args.put("x-single-active-consumer", true);
+
+            Queue shardQueue = new Queue(this.successShardQueueName(shard), true, false, false, args);
+            declarables.add(shardQueue);
+            declarables.add(BindingBuilder.bind(shardQueue).to(paymentExchange()).with(this.successShardRoutingKey(shard)));
+        }
+        return new Declarables(declarables);
+    }
+
+    @Bean
+    public String[] paymentSuccessListenerQueues() {
+        // The queues the payment success listeners consume from: every shard, or the single success queue
+        if (!shardingEnabled) {
+            return new String[] { paymentSuccessQueueName };
+        }
+
+        String[] queueNames = new String[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            queueNames[shard] = this.successShardQueueName(shard);
+        }
+        return queueNames;
+    }
+
+    private String successShardQueueName(int shard) {
+        return paymentSuccessQueueName + ".shard." + shard;
+    }
+
+    private String successShardRoutingKey(int shard) {
+        return paymentSuccessRoutingKey + ".shard." + shard;
+    }
+
 
 
     /*=== Payment Failed Configuration ===
@@ -147,6 +249,53 @@ public class RabbitMQConfig {
 
 
 
+    /*=== Payment Request Configuration ===
+     * The payment request queue buffers payments submitted through the asynchronous (202 Accepted) endpoint.
+     * Bursts are absorbed by the broker instead of Tomcat's accept queue, and a listener processes them at its own pace.
+     */
+    @Bean
+    public Queue paymentRequestQueue() {
+        // The queue will survive server restarts and messages will be retained until consumed
+        // The queue is configured with a dead-letter exchange (DLX) and routing key for undeliverable messages
+        Map<String, Object> args = new HashMap<>();
+        args.put("x-dead-letter-exchange", paymentExchangeDlxName);
+        args.put("x-dead-letter-routing-key", deadLetterRoutingKeyRequest);
+
+        return new Queue(paymentRequestQueueName, true, false, false, args);
+    }
+
+    @Bean
+    public Binding paymentRequestBinding() {
+        // Bind the payment request queue to the payment exchange with the specified routing key
+        // This means that messages sent to the exchange with this routing key will be delivered to this queue
+        return BindingBuilder.bind(paymentRequestQueue()).to(paymentExchange()).with(paymentRequestRoutingKey);
+    }
+
+    /*=== Payment Holding Configuration ===
+     * Every payment method has a holding queue (<requestQueueName>.holding.<method>, e.g. order.payment.requests.queue.holding.paypal),
+     * bound with the routing key <requestRoutingKey>.holding.<method>.
+     * Asynchronous payment requests that exceed their gateway's rate limit are parked there,
+     * and PaymentRequestListener drains each holding queue at the rate the gateway allows, with the consumers HoldingListenerConfig sizes for it.
+     */
+    @Bean
+    public Declarables paymentHoldingDeclarables() {
+        List<Declarable> declarables = new ArrayList<>();
+        for (PaymentMethod paymentMethod : PaymentMethod.values()) {
+            // Holding queues dead-letter to the same DLQ as the payment request queue
+            Map<String, Object> args = new HashMap<>();
+            args.put("x-dead-letter-exchange", paymentExchangeDlxName);
+            args.put("x-dead-letter-routing-key", deadLetterRoutingKeyRequest);
+
+            Queue holdingQueue = new Queue(paymentRequestQueueName + ".holding." + paymentMethod.getKey(), true, false, false, args);
+            declarables.add(holdingQueue);
+            declarables.add(BindingBuilder.bind(holdingQueue).to(paymentExchange())
+                .with(paymentRequestRoutingKey + ".holding." + paymentMethod.getKey()));
+        }
+        return new Declarables(declarables);
+    }
+
+
+
     /*=== Dead Letter Exchange (DLX) Configuration ===
      * The DLX is used to handle undeliverable messages that cannot be routed to any queue.
      * Messages sent to the DLX will be routed to the specified dead letter queues based on the routing key.
@@ -172,6 +321,13 @@ public class RabbitMQConfig {
         return new Queue(deadLetterQueueFailedName, true);
     }
 
+    @Bean
+    public Queue paymentRequestDLQ() {
+        // Create a durable dead letter queue for payment requests that could not be processed
+        // The queue will survive server restarts and messages will be retained until consumed
+        return new Queue(deadLetterQueueRequestName, true);
+    }
+
     @Bean
     public Binding paymentSuccessDLQBinding() {
         // Bind the dead letter queue for payment success to the dead letter exchange with the specified routing key
@@ -186,6 +342,73 @@ public class RabbitMQConfig {
         return BindingBuilder.bind(paymentFailedDLQ()).to(paymentDLXExchange()).with(deadLetterRoutingKeyFailed);
     }
 
+    @Bean
+    public Binding paymentRequestDLQBinding() {
+        // Bind the dead letter queue for payment requests to the dead letter exchange with the specified routing key
+        // This means that messages sent to the DLX with this routing key will be delivered to this queue
+        return BindingBuilder.bind(paymentRequestDLQ()).to(paymentDLXExchange()).with(deadLetterRoutingKeyRequest);
+    }
+
+    @Bean
+    public Queue paymentParkingLotQueue() {
+        // Create a durable parking-lot queue for dead-lettered messages that DeadLetterRedriveService cannot replay
+        // Nothing consumes it; parked messages are kept until someone inspects them
+        return new Queue(parkingLotQueueName, true);
+    }
+
+    @Bean
+    public Binding paymentParkingLotBinding() {
+        // Bind the parking-lot queue to the dead letter exchange, next to the dead letter queues it is fed from
+        return BindingBuilder.bind(paymentParkingLotQueue()).to(paymentDLXExchange()).with(parkingLotRoutingKey);
+    }
+
+    /*=== Delayed Retry Configuration ===
+     * With spring.rabbitmq.order-payment.retry.mode=delayed-queue, a failed message is not retried on the consumer thread.
+     * DelayedRetryRecoverer republishes it to the retry exchange, into the delay queue of the next attempt.
+     * Each delay queue holds messages for its x-message-ttl and then dead-letters them back to the main exchange
+     * with the original routing key, so the consumer keeps processing other messages while a message waits.
+     */
+    @Bean
+    public DirectExchange paymentRetryExchange() {
+        // Create a durable exchange that routes failed messages to the delay queue of their next attempt
+        return new DirectExchange(paymentExchangeRetryName, true, false);
+    }
+
+    @Bean
+    public Declarables paymentRetryDeclarables() {
+        // The delay queues are only needed when retries are delayed through the broker
+        if (!"delayed-queue".equalsIgnoreCase(retryMode)) {
+            return new Declarables();
+        }
+
+        List<Declarable> declarables = new ArrayList<>();
+        // Sharded success queues retry on the consumer thread (see RetryConfig), so they have no delay queues
+        if (!shardingEnabled) {
+            declarables.addAll(this.retryQueues(paymentSuccessQueueName, paymentSuccessRoutingKey));
+        }
+        declarables.addAll(this.retryQueues(paymentFailedQueueName, paymentFailedRoutingKey));
+        return new Declarables(declarables);
+    }
+
+    private List<Declarable> retryQueues(String queueName, String routingKey) {
+        // One delay queue per attempt, named and bound as <queueName>.retry.<attempt>
+        List<Declarable> declarables = new ArrayList<>();
+        for (int attempt = 1; attempt <= retryDelays.length; attempt++) {
+            String retryQueueName = queueName + ".retry." + attempt;
+
+            // Messages expire after the delay of this attempt and are dead-lettered back to the main exchange
+            Map<String, Object> args = new HashMap<>();
+            args.put("x-message-ttl", retryDelays[attempt - 1]);
+            args.put("x-dead-letter-exchange", paymentExchangeName);
+            args.put("x-dead-letter-routing-key", routingKey);
+
+            Queue retryQueue = new Queue(retryQueueName, true, false, false, args);
+            declarables.add(retryQueue);
+            declarables.add(BindingBuilder.bind(retryQueue).to(paymentRetryExchange()).with(retryQueueName));
+        }
+        return declarables;
+    }
+
     // Connection Factory and RabbitTemplate configuration
     @Bean
     public CachingConnectionFactory connectionFactory() {
@@ -208,14 +431,22 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public RabbitTemplate rabbitTemplate(CachingConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(CachingConnectionFactory connectionFactory, PaymentMetrics paymentMetrics,
+        MessageConverter paymentMessageConverter) {
         // Create a RabbitTemplate for sending messages to RabbitMQ exchanges and queues
         // The RabbitTemplate uses the connection factory to create connections and channels for sending messages
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
 
-        // The Jackson2JsonMessageConverter is used to convert messages to and from JSON format
-        // This allows for easy serialization and deserialization of Java objects to JSON and vice versa
-        rabbitTemplate.setMessageConverter(new Jackson2JsonMessageConverter());
+        // The payment message converter encodes messages in the configured wire format (JSON or Smile)
+        // and decodes either format based on the content type of the message
+        rabbitTemplate.setMessageConverter(paymentMessageConverter);
+
+        // Gzip messages of at least the compression threshold (e.g. producer-side batches) right before they are sent,
+        // so large messages take less broker memory, disk and network and stay clear of the broker's max message size (replyCode 311)
+        if (compressionEnabled) {
+            rabbitTemplate.setBeforePublishPostProcessors(
+                new ThresholdCompressingPostProcessor(compressionThreshold, compressionLevel, paymentMetrics));
+        }
 
         // To avoid deadlocked connections, it is generally recommended to use 
         //  a separate connection for publishers and consumers (except when a publisher is participating in a consumer transaction). 
@@ -237,6 +468,7 @@ public class RabbitMQConfig {
         // It provides information about the message and the reason for the failure
         rabbitTemplate.setReturnsCallback((returnedMessage) -> {
             int replyCode = returnedMessage.getReplyCode();
+            paymentMetrics.recordReturn(replyCode);
 
             switch (replyCode) {
                 case 311:
@@ -291,7 +523,11 @@ public class RabbitMQConfig {
 
         // This callback is invoked when a message is acknowledged by RabbitMQ
         // It provides information about the message and whether it was acknowledged or not
-        rabbitTemplate.setConfirmCallback((correlationData, ack, cause) -> {            
+        rabbitTemplate.setConfirmCallback((correlationData, ack, cause) -> {
+            if (correlationData instanceof TimedCorrelationData timedCorrelationData) {
+                paymentMetrics.recordConfirm(ack, timedCorrelationData.getSentAtNanos());
+            }
+
             if (ack) {
                 logger.info("RabbitMQ message acknowledged: " + correlationData + ", ack: " + ack + ", cause: " + cause);
             } else {
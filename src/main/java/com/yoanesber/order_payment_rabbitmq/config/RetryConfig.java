@@ -2,9 +2,12 @@ package com.yoanesber.order_payment_rabbitmq.config;
 
 import org.aopalliance.aop.Advice;
 import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.yoanesber.order_payment_rabbitmq.recovery.DelayedRetryRecoverer;
 import com.yoanesber.order_payment_rabbitmq.recovery.LoggingRejectAndDontRequeueRecoverer;
 
 /*
@@ -12,6 +15,11 @@ import com.yoanesber.order_payment_rabbitmq.recovery.LoggingRejectAndDontRequeue
  * The successQueueRetryAdvice is configured with retry logic for successful message processing,
  * while the failedQueueRetryAdvice is configured for failed message processing without retries.
  * These beans are used in the RabbitMQ listener container factories to handle message processing retries.
+ * With spring.rabbitmq.order-payment.retry.mode=delayed-queue, the advice makes a single attempt and hands the
+ * failed message to DelayedRetryRecoverer, which retries it through the broker's delay queues instead of
+ * sleeping on the consumer thread between attempts.
+ * Sharded success queues are always retried on the consumer thread: while a message waits in a delay queue, the shard's
+ * single active consumer would go on with later events of the same order, and the retried event would arrive out of order.
  */ 
 
 @Configuration
@@ -22,21 +30,41 @@ public class RetryConfig {
     private static final double MULTIPLIER = 1.0; // No multiplier, fixed interval
     private static final long MAX_INTERVAL = 10000L; // 10 seconds
 
+    @Value("${spring.rabbitmq.order-payment.retry.mode:in-container}")
+    private String retryMode;
+
+    @Value("${spring.rabbitmq.order-payment.sharding.enabled:false}")
+    private boolean shardingEnabled;
+
     @Bean
-    public Advice successQueueRetryAdvice() {
-        return RetryInterceptorBuilder.stateless()
-            .maxAttempts(MAX_ATTEMPTS)
-            .backOffOptions(INITIAL_INTERVAL, MULTIPLIER, MAX_INTERVAL)
-            .recoverer(new LoggingRejectAndDontRequeueRecoverer())
-            .build();
+    public Advice successQueueRetryAdvice(
+            @Qualifier("loggingRejectAndDontRequeueRecoverer") LoggingRejectAndDontRequeueRecoverer recoverer,
+            DelayedRetryRecoverer delayedRetryRecoverer) {
+        // Retrying in place blocks the shard, which is what keeps the events of an order in order
+        return this.retryAdvice(recoverer, delayedRetryRecoverer, !shardingEnabled);
     }
 
     @Bean
-    public Advice failedQueueRetryAdvice() {
+    public Advice failedQueueRetryAdvice(
+            @Qualifier("loggingRejectAndDontRequeueRecoverer") LoggingRejectAndDontRequeueRecoverer recoverer,
+            DelayedRetryRecoverer delayedRetryRecoverer) {
+        return this.retryAdvice(recoverer, delayedRetryRecoverer, true);
+    }
+
+    private Advice retryAdvice(LoggingRejectAndDontRequeueRecoverer recoverer, DelayedRetryRecoverer delayedRetryRecoverer,
+        boolean delayable) {
+        if (delayable && "delayed-queue".equalsIgnoreCase(retryMode)) {
+            // Only one attempt on the consumer thread, further attempts are delayed by the broker
+            return RetryInterceptorBuilder.stateless()
+                .maxAttempts(1)
+                .recoverer(delayedRetryRecoverer)
+                .build();
+        }
+
         return RetryInterceptorBuilder.stateless()
             .maxAttempts(MAX_ATTEMPTS)
             .backOffOptions(INITIAL_INTERVAL, MULTIPLIER, MAX_INTERVAL)
-            .recoverer(new LoggingRejectAndDontRequeueRecoverer())
+            .recoverer(recoverer)
             .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.yoanesber.order_payment_rabbitmq.controller;
+
+import java.net.URI;
+import java.util.Map;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.yoanesber.order_payment_rabbitmq.dto.RedriveJobDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.RedriveRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.CustomHttpResponse;
+import com.yoanesber.order_payment_rabbitmq.service.DeadLetterRedriveService;
+
+/**
+ * DeadLetterAdminController is the operator endpoint for the dead letter queues.
+ * It reports the depth of the dead letter and parking-lot queues, starts re-drive jobs that replay dead-lettered messages
+ * to their original exchange, and reports the progress of those jobs.
+ * A re-drive runs in the background, so starting one returns 202 Accepted with the URL to poll, like asynchronous payments.
+ * The endpoint moves messages between queues and is meant to be reachable by operators only.
+ */
+
+@RestController
+@RequestMapping("/api/v1/admin/dead-letters")
+public class DeadLetterAdminController {
+    private final DeadLetterRedriveService deadLetterRedriveService;
+
+    public DeadLetterAdminController(DeadLetterRedriveService deadLetterRedriveService) {
+        this.deadLetterRedriveService = deadLetterRedriveService;
+    }
+
+    @GetMapping
+    public ResponseEntity<CustomHttpResponse> getQueueDepths() {
+        try {
+            Map<String, Long> depths = deadLetterRedriveService.getQueueDepths();
+            return ResponseEntity.ok(new CustomHttpResponse(HttpStatus.OK.value(),
+                "Dead letter queue depths retrieved successfully", depths));
+        } catch (Exception e) {
+            // The broker could not be reached or refused the passive declare
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new CustomHttpResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "An error occurred while retrieving dead letter queue depths", null));
+        }
+    }
+
+    @PostMapping("/redrive")
+    public ResponseEntity<CustomHttpResponse> startRedrive(@RequestBody RedriveRequestDTO redriveRequestDTO) {
+        try {
+            // Start the re-drive job; messages are read, republished and acknowledged in the background.
+            RedriveJobDTO job = deadLetterRedriveService.startRedrive(redriveRequestDTO);
+
+            // Return 202 Accepted with the job and the URL to poll for its progress.
+            URI jobUri = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/admin/dead-letters/redrive/{jobId}")
+                .buildAndExpand(job.getJobId())
+                .toUri();
+
+            return ResponseEntity.accepted()
+                .location(jobUri)
+                .body(new CustomHttpResponse(HttpStatus.ACCEPTED.value(),
+                "Re-drive job started", job));
+        } catch (IllegalArgumentException e) {
+            // Unknown queue, the payment request DLQ, or invalid filters.
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new CustomHttpResponse(HttpStatus.BAD_REQUEST.value(),
+                    e.getMessage(), null));
+        } catch (IllegalStateException e) {
+            // Another job is already re-driving the same queue.
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new CustomHttpResponse(HttpStatus.CONFLICT.value(),
+                    e.getMessage(), null));
+        } catch (Exception e) {
+            // Handle any other exceptions and return an internal server error response.
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new CustomHttpResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "An error occurred while starting the re-drive job", null));
+        }
+    }
+
+    @GetMapping("/redrive/{jobId}")
+    public ResponseEntity<CustomHttpResponse> getRedriveJob(@PathVariable String jobId) {
+        // Look up the job; unknown jobs and jobs evicted from the in-memory store are reported as not found.
+        RedriveJobDTO job = deadLetterRedriveService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new CustomHttpResponse(HttpStatus.NOT_FOUND.value(),
+                    "Re-drive job not found", null));
+        }
+
+        return ResponseEntity.ok(new CustomHttpResponse(HttpStatus.OK.value(),
+            "Re-drive job retrieved successfully", job));
+    }
+
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<CustomHttpResponse> handleUnreadableRequest(HttpMessageNotReadableException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+            .body(new CustomHttpResponse(HttpStatus.BAD_REQUEST.value(),
+                "Invalid input data", null));
+    }
+}
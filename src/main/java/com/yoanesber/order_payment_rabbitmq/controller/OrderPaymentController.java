@@ -1,21 +1,40 @@
 package com.yoanesber.order_payment_rabbitmq.controller;
 
+import java.net.URI;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
 import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentResponseDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.OrderPaymentStatusDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.SubmitOrderPaymentResponseDTO;
 import com.yoanesber.order_payment_rabbitmq.entity.CustomHttpResponse;
 import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.gateway.GatewayUnavailableException;
+import com.yoanesber.order_payment_rabbitmq.service.IdempotencyInProgressException;
+import com.yoanesber.order_payment_rabbitmq.service.IdempotencyKeyMismatchException;
+import com.yoanesber.order_payment_rabbitmq.service.IdempotencyService;
 import com.yoanesber.order_payment_rabbitmq.service.OrderPaymentService;
+import com.yoanesber.order_payment_rabbitmq.service.PaymentStatusService;
 
 /**
  * OrderPaymentController handles HTTP requests related to order payments.
  * It provides an endpoint to create a new order payment record.
+ * It also provides an asynchronous submission endpoint that returns 202 Accepted with a payment handle,
+ * and a status endpoint to poll the outcome of that submission.
+ * Payment creation is idempotent per Idempotency-Key header, or per order ID when the header is missing,
+ * so a client retrying after a timeout gets the original result instead of being charged twice.
+ * Only successful payments are replayed, and reusing a key with a different request body is rejected with 422.
  */
 
 @RestController
@@ -23,15 +42,29 @@ import com.yoanesber.order_payment_rabbitmq.service.OrderPaymentService;
 public class OrderPaymentController {
     private final OrderPaymentService orderPaymentService;
 
-    public OrderPaymentController(OrderPaymentService orderPaymentService) {
+    private final PaymentStatusService paymentStatusService;
+
+    private final IdempotencyService idempotencyService;
+
+    public OrderPaymentController(OrderPaymentService orderPaymentService, PaymentStatusService paymentStatusService,
+        IdempotencyService idempotencyService) {
         this.orderPaymentService = orderPaymentService;
+        this.paymentStatusService = paymentStatusService;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping
-    public ResponseEntity<CustomHttpResponse> createOrderPayment(@RequestBody CreateOrderPaymentRequestDTO orderPaymentDTO) {
+    public ResponseEntity<CustomHttpResponse> createOrderPayment(@RequestBody CreateOrderPaymentRequestDTO orderPaymentDTO,
+        @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             // Create a new OrderPayment record using the service layer.
-            OrderPayment orderPayment = orderPaymentService.createOrderPayment(orderPaymentDTO);
+            // Retries with the same key (or for the same order) share the result of the first request.
+            // Only a successful payment is kept for replay, so a payment that did not succeed can be made again.
+            String key = idempotencyKey != null ? "key:" + idempotencyKey 
+                : orderPaymentDTO.getOrderId() != null ? "order:" + orderPaymentDTO.getOrderId() : null;
+            OrderPayment orderPayment = idempotencyService.execute(key, orderPaymentDTO,
+                () -> orderPaymentService.createOrderPayment(orderPaymentDTO),
+                payment -> payment != null && "SUCCESS".equalsIgnoreCase(payment.getPaymentStatus()));
 
             // Check if the order payment was created successfully.
             if (orderPayment == null) {
@@ -57,6 +90,21 @@ public class OrderPaymentController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(new CustomHttpResponse(HttpStatus.BAD_REQUEST.value(), 
                     "Invalid input data", null));
+        } catch (IdempotencyKeyMismatchException e) {
+            // The key was already used for a different payment request.
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(new CustomHttpResponse(HttpStatus.UNPROCESSABLE_ENTITY.value(), 
+                    "Idempotency key was already used with a different request", null));
+        } catch (IdempotencyInProgressException e) {
+            // The first request with the same key is still running; the client may retry later.
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new CustomHttpResponse(HttpStatus.CONFLICT.value(), 
+                    "Order payment is still being processed", null));
+        } catch (GatewayUnavailableException e) {
+            // The payment gateway is unavailable or too slow; the client may retry later.
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new CustomHttpResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), 
+                    "Payment gateway is unavailable", null));
         } catch (Exception e) {
             // Handle any other exceptions and return an internal server error response.
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -64,4 +112,59 @@ public class OrderPaymentController {
                     "An error occurred while creating order payment", null));
         }
     }
+
+    @PostMapping("/async")
+    public ResponseEntity<CustomHttpResponse> submitOrderPayment(@RequestBody CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        try {
+            // Enqueue the payment request; the gateway call and the publish happen later in PaymentRequestListener.
+            String paymentHandle = orderPaymentService.submitOrderPayment(orderPaymentDTO);
+
+            // Return 202 Accepted with the payment handle and the URL to poll for the payment status.
+            URI statusUri = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/order-payment/status/{paymentHandle}")
+                .buildAndExpand(paymentHandle)
+                .toUri();
+
+            return ResponseEntity.accepted()
+                .location(statusUri)
+                .body(new CustomHttpResponse(HttpStatus.ACCEPTED.value(),
+                "Order payment accepted for processing",
+                new SubmitOrderPaymentResponseDTO(paymentHandle, 
+                    orderPaymentDTO.getOrderId(), 
+                    "PENDING", 
+                    statusUri.toString())));
+        } catch (IllegalArgumentException e) {
+            // Handle invalid input data and return a bad request response.
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new CustomHttpResponse(HttpStatus.BAD_REQUEST.value(), 
+                    "Invalid input data", null));
+        } catch (Exception e) {
+            // Handle any other exceptions and return an internal server error response.
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new CustomHttpResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(), 
+                    "An error occurred while submitting order payment", null));
+        }
+    }
+
+    @GetMapping("/status/{paymentHandle}")
+    public ResponseEntity<CustomHttpResponse> getOrderPaymentStatus(@PathVariable String paymentHandle) {
+        // Look up the payment status; unknown and expired handles are reported as not found.
+        OrderPaymentStatusDTO status = paymentStatusService.getStatus(paymentHandle);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new CustomHttpResponse(HttpStatus.NOT_FOUND.value(), 
+                    "Order payment status not found", null));
+        }
+
+        return ResponseEntity.ok(new CustomHttpResponse(HttpStatus.OK.value(), 
+            "Order payment status retrieved successfully", status));
+    }
+
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<CustomHttpResponse> handleUnreadableRequest(HttpMessageNotReadableException e) {
+        // Request bodies that cannot be deserialized, e.g., with an unknown payment method, are invalid input data.
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+            .body(new CustomHttpResponse(HttpStatus.BAD_REQUEST.value(), 
+                "Invalid input data", null));
+    }
 }
@@ -0,0 +1,140 @@
+package com.yoanesber.order_payment_rabbitmq.converter;
+
+import java.io.IOException;
+import java.util.Map;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentEventSummaryDTO;
+
+/**
+ * PayloadSerializer is the one place payloads are turned into bytes and back.
+ * In the application it wraps the ObjectMapper that Spring MVC uses for the controller, plus a Smile mapper built
+ * from the same Jackson2ObjectMapperBuilder, and the message converters and the listeners serialize through these mappers too.
+ * Typed reads use an ObjectReader built per payload type and wire format on first use and reused afterwards;
+ * readers are immutable and thread-safe, so later calls skip the type lookup that readValue does on every call.
+ * Writes need no such cache: the message converters write through the mappers directly.
+ * The partial-field reader readSummary streams the top-level fields of a payment event and stops once it has the
+ * order id, status and transaction id, skipping everything else without materialising it.
+ */
+
+public class PayloadSerializer {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    // The top-level fields read by readSummary
+    private static final int SUMMARY_FIELD_COUNT = 3;
+
+    private final ObjectMapper jsonMapper;
+
+    private final ObjectMapper smileMapper;
+
+    private final ObjectReader jsonMapReader;
+
+    private final ObjectReader smileMapReader;
+
+    private final ClassValue<ObjectReader> jsonReaders;
+
+    private final ClassValue<ObjectReader> smileReaders;
+
+    public PayloadSerializer(ObjectMapper jsonMapper, ObjectMapper smileMapper) {
+        this.jsonMapper = jsonMapper;
+        this.smileMapper = smileMapper;
+        this.jsonMapReader = jsonMapper.readerFor(MAP_TYPE);
+        this.smileMapReader = smileMapper.readerFor(MAP_TYPE);
+        this.jsonReaders = readers(jsonMapper);
+        this.smileReaders = readers(smileMapper);
+    }
+
+    /**
+     * Creates a PayloadSerializer outside of the application context, e.g. for benchmarks.
+     * The mappers are configured like Spring Boot's: unknown properties are ignored, the Java time module is registered
+     * and dates are written as ISO-8601 strings.
+     *
+     * @param blackbirdEnabled Whether to register the Blackbird module, which replaces reflection with generated lambdas.
+     */
+    public static PayloadSerializer standalone(boolean blackbirdEnabled) {
+        return new PayloadSerializer(configure(Jackson2ObjectMapperBuilder.json(), blackbirdEnabled).build(),
+            configure(Jackson2ObjectMapperBuilder.smile(), blackbirdEnabled).build());
+    }
+
+    public ObjectMapper getObjectMapper(WireFormat wireFormat) {
+        return wireFormat == WireFormat.SMILE ? smileMapper : jsonMapper;
+    }
+
+    public ObjectReader getReader(Class<?> type, String contentType) {
+        return isSmile(contentType) ? smileReaders.get(type) : jsonReaders.get(type);
+    }
+
+    public <T> T read(byte[] body, String contentType, Class<T> type) throws IOException {
+        return this.getReader(type, contentType).readValue(body);
+    }
+
+    public Map<String, Object> readMap(byte[] body, String contentType) throws IOException {
+        return (isSmile(contentType) ? smileMapReader : jsonMapReader).readValue(body);
+    }
+
+    public Map<String, Object> convertToMap(Object value) {
+        return jsonMapper.convertValue(value, MAP_TYPE);
+    }
+
+    public String writeAsString(Object value) throws IOException {
+        return jsonMapper.writeValueAsString(value);
+    }
+
+    public PaymentEventSummaryDTO readSummary(byte[] body, String contentType) throws IOException {
+        PaymentEventSummaryDTO summary = new PaymentEventSummaryDTO();
+
+        try (JsonParser parser = this.getObjectMapper(isSmile(contentType) ? WireFormat.SMILE : WireFormat.JSON).createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Payment event is not an object");
+            }
+
+            int remaining = SUMMARY_FIELD_COUNT;
+            while (remaining > 0 && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "orderId" -> summary.setOrderId(parser.getValueAsString());
+                    case "paymentStatus" -> summary.setPaymentStatus(parser.getValueAsString());
+                    case "transactionId" -> summary.setTransactionId(parser.getValueAsString());
+                    default -> {
+                        // Skip the value, including nested objects and arrays, without building it
+                        parser.skipChildren();
+                        continue;
+                    }
+                }
+                remaining--;
+            }
+            return summary;
+        }
+    }
+
+    private static Jackson2ObjectMapperBuilder configure(Jackson2ObjectMapperBuilder builder, boolean blackbirdEnabled) {
+        builder.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (blackbirdEnabled) {
+            builder.postConfigurer(mapper -> mapper.registerModule(new BlackbirdModule()));
+        }
+        return builder;
+    }
+
+    private static boolean isSmile(String contentType) {
+        return WireFormat.SMILE.getContentType().equals(contentType);
+    }
+
+    private static ClassValue<ObjectReader> readers(ObjectMapper mapper) {
+        return new ClassValue<>() {
+            @Override
+            protected ObjectReader computeValue(Class<?> type) {
+                return mapper.readerFor(type);
+            }
+        };
+    }
+}
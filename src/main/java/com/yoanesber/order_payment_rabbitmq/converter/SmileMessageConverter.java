@@ -0,0 +1,20 @@
+package com.yoanesber.order_payment_rabbitmq.converter;
+
+import org.springframework.amqp.support.converter.AbstractJackson2MessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * SmileMessageConverter converts objects to and from Jackson Smile, a binary encoding of the JSON data model.
+ * Field names are written once and referenced afterwards, and numbers are stored in binary,
+ * so an event is smaller than its JSON form while keeping the same __TypeId__ header and type mapping.
+ * The ObjectMapper must be created with a SmileFactory; the application passes the Smile mapper of PayloadSerializer.
+ */
+
+public class SmileMessageConverter extends AbstractJackson2MessageConverter {
+
+    public SmileMessageConverter(ObjectMapper objectMapper, String... trustedPackages) {
+        super(objectMapper, MimeTypeUtils.parseMimeType(WireFormat.SMILE.getContentType()), trustedPackages);
+    }
+}
@@ -0,0 +1,24 @@
+package com.yoanesber.order_payment_rabbitmq.converter;
+
+import org.springframework.amqp.core.MessageProperties;
+
+/**
+ * WireFormat selects how outgoing payment events and requests are encoded, and names the content type that marks them.
+ * JSON is readable by any consumer, while SMILE is Jackson's binary JSON, which is smaller and faster to parse.
+ * Consumers pick the decoder from the content type of each message, so both formats can be read during a rollout.
+ */
+
+public enum WireFormat {
+    JSON(MessageProperties.CONTENT_TYPE_JSON),
+    SMILE("application/x-jackson-smile");
+
+    private final String contentType;
+
+    WireFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
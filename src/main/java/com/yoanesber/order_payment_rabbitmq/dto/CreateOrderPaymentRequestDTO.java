@@ -2,6 +2,8 @@ package com.yoanesber.order_payment_rabbitmq.dto;
 
 import java.math.BigDecimal;
 
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
@@ -17,7 +19,7 @@ public class CreateOrderPaymentRequestDTO {
     private String orderId; // Order identifier (linked to Orders table)
     private BigDecimal amount; // Payment amount
     private String currency; // e.g., USD, EUR
-    private String paymentMethod; // e.g., CREDIT_CARD, PAYPAL, BANK_TRANSFER
+    private PaymentMethod paymentMethod; // e.g., CREDIT_CARD, PAYPAL, BANK_TRANSFER (case-insensitive)
     
     // Credit card details
     private String cardNumber; // Credit card number
@@ -0,0 +1,23 @@
+package com.yoanesber.order_payment_rabbitmq.dto;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor // Required for Jackson deserialization when receiving JSON requests.
+@AllArgsConstructor // Helps create DTO objects easily (useful when converting from entities).
+public class OrderPaymentStatusDTO {
+    private String paymentHandle; // Handle returned by the asynchronous submission endpoint
+    private String orderId; // Order identifier (linked to Orders table)
+    private String paymentStatus; // PENDING, SUCCESS, FAILED
+    private String transactionId; // Reference from payment gateway, set once the payment succeeded
+    private String message; // Failure reason, set once the payment failed
+    private Instant updatedAt = Instant.now(); // Last status change
+}
@@ -0,0 +1,18 @@
+package com.yoanesber.order_payment_rabbitmq.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentEventSummaryDTO {
+    private String orderId; // Order identifier of the payment event
+    private String paymentStatus; // SUCCESS, FAILED
+    private String transactionId; // Reference from payment gateway
+}
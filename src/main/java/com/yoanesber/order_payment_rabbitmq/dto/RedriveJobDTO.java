@@ -0,0 +1,28 @@
+package com.yoanesber.order_payment_rabbitmq.dto;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor // Required for Jackson deserialization when receiving JSON requests.
+@AllArgsConstructor // Helps create DTO objects easily (useful when converting from entities).
+public class RedriveJobDTO {
+    private String jobId; // Handle returned by the re-drive endpoint
+    private String queueName; // Dead letter queue being re-driven
+    private String status; // RUNNING, COMPLETED, CANCELLED, FAILED
+    private long scanned; // Messages read from the queue
+    private long republished; // Messages republished to their original exchange and confirmed
+    private long parked; // Messages moved to the parking-lot queue
+    private long skipped; // Messages not matching the filters, left on the queue
+    private long failed; // Messages whose republish was not confirmed, left on the queue
+    private String message; // Failure reason, set once the job failed
+    private Instant startedAt; // Start of the job
+    private Instant finishedAt; // End of the job, null while it is running
+}
@@ -0,0 +1,22 @@
+package com.yoanesber.order_payment_rabbitmq.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor // Required for Jackson deserialization when receiving JSON requests.
+@AllArgsConstructor // Helps create DTO objects easily (useful when converting from entities).
+public class RedriveRequestDTO {
+    private String queueName; // Dead letter queue to re-drive, e.g. order.payment.success.dlq
+    private String reason; // Only messages dead-lettered for this x-death reason (rejected, expired, maxlen, delivery_limit)
+    private String routingKey; // Only messages originally published with this routing key
+    private Long minAge; // Only messages dead-lettered at least this many milliseconds ago
+    private Long maxAge; // Only messages dead-lettered at most this many milliseconds ago
+    private Integer maxMessages; // Maximum number of messages read from the queue, defaults to order-payment.redrive.max-messages
+    private Double ratePerSecond; // Maximum republish rate, defaults to order-payment.redrive.rate
+}
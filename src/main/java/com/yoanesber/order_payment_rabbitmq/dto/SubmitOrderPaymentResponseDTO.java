@@ -0,0 +1,19 @@
+package com.yoanesber.order_payment_rabbitmq.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor // Required for Jackson deserialization when receiving JSON requests.
+@AllArgsConstructor // Helps create DTO objects easily (useful when converting from entities).
+public class SubmitOrderPaymentResponseDTO {
+    private String paymentHandle; // Handle used to poll the payment status
+    private String orderId; // Order identifier (linked to Orders table)
+    private String paymentStatus; // PENDING, SUCCESS, FAILED
+    private String statusUrl; // URL of the status endpoint for this payment
+}
@@ -21,9 +21,8 @@ public class OrderPayment {
     private String currency; // e.g., USD, EUR
     private String paymentMethod; // e.g., CREDIT_CARD, PAYPAL, BANK_TRANSFER
     private String paymentStatus; // PENDING, SUCCESS, FAILED
-    private String cardNumber; // Credit card number, e.g., 1234 5678 9012 3456
+    private String cardNumber; // Masked credit card number, only the last 4 digits are kept, e.g., **** **** **** 3456
     private String cardExpiry; // Credit card expiry date, e.g., MM/YY
-    private String cardCvv; // Credit card CVV (Card Verification Value), e.g., 123
     private String paypalEmail; // PayPal email address
     private String bankAccount; // Bank account number, e.g., 1234567890
     private String bankName; // Bank name, e.g., Bank of Indonesia
@@ -0,0 +1,47 @@
+package com.yoanesber.order_payment_rabbitmq.entity;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * PaymentMethod is the payment method of an order payment request.
+ * It is parsed once when the request is deserialized, case-insensitively as before,
+ * and selects the PaymentGateway that validates and processes the payment.
+ */
+
+public enum PaymentMethod {
+    CREDIT_CARD("credit card"),
+    PAYPAL("PayPal"),
+    BANK_TRANSFER("bank transfer");
+
+    private static final PaymentMethod[] VALUES = values();
+
+    private final String label;
+
+    PaymentMethod(String label) {
+        this.label = label;
+    }
+
+    // Human-readable name used in validation messages, e.g., "credit card".
+    public String getLabel() {
+        return label;
+    }
+
+    // Name used in property keys, queue names and thread names, e.g., "credit-card".
+    public String getKey() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    @JsonCreator
+    public static PaymentMethod fromValue(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        for (PaymentMethod paymentMethod : VALUES) {
+            if (paymentMethod.name().equalsIgnoreCase(value)) {
+                return paymentMethod;
+            }
+        }
+        throw new IllegalArgumentException("Invalid payment method: " + value);
+    }
+}
@@ -0,0 +1,179 @@
+package com.yoanesber.order_payment_rabbitmq.gateway;
+
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CircuitBreaker stops calling a payment gateway that keeps failing.
+ * While CLOSED, the outcomes of the last windowSize calls are recorded, and the breaker opens once at least
+ * minimumCalls are recorded and the failure rate reaches the threshold. While OPEN, every call is rejected.
+ * After the open duration the breaker becomes HALF_OPEN and lets a limited number of probe calls through:
+ * it closes again once all probes succeed, and opens again as soon as one fails.
+ * Every state change starts a new generation, and a permission remembers the generation it was granted in,
+ * so a call that was let through in an earlier state, e.g., while CLOSED, cannot count as a probe or reopen the breaker.
+ */
+
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    // Handed out by tryAcquirePermission and given back with the outcome of the call
+    public static final class Permission {
+
+        private final long generation;
+
+        private Permission(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    private final String name;
+
+    private final int minimumCalls;
+
+    private final int failureRateThreshold;
+
+    private final long openDurationNanos;
+
+    private final int halfOpenProbes;
+
+    // Ring buffer of the outcomes of the last calls; true means failed
+    private final boolean[] outcomes;
+
+    private int nextOutcome;
+
+    private int recordedCalls;
+
+    private int failedCalls;
+
+    private State state = State.CLOSED;
+
+    // Incremented on every state change
+    private long generation;
+
+    private long openedAt;
+
+    private int probesInFlight;
+
+    private int probeSuccesses;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold, 
+        long openDuration, int halfOpenProbes) {
+        this.name = name;
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDuration);
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * Returns a permission if a call may be made now, or null if not. A permitted call must be followed by exactly one of
+     * onSuccess, onFailure or releasePermission with that permission.
+     */
+    public synchronized Permission tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return null;
+            }
+            this.transitionTo(State.HALF_OPEN);
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= halfOpenProbes) {
+                return null;
+            }
+            probesInFlight++;
+        }
+        return new Permission(generation);
+    }
+
+    public synchronized void onSuccess(Permission permission) {
+        if (this.isStale(permission)) {
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            if (++probeSuccesses >= halfOpenProbes) {
+                this.transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            this.record(false);
+        }
+    }
+
+    public synchronized void onFailure(Permission permission) {
+        if (this.isStale(permission)) {
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            this.transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            this.record(true);
+            if (recordedCalls >= minimumCalls && failedCalls * 100 >= failureRateThreshold * recordedCalls) {
+                this.transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    /**
+     * Gives a permission back without recording an outcome, e.g., when the caller was interrupted.
+     */
+    public synchronized void releasePermission(Permission permission) {
+        if (!this.isStale(permission) && state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private boolean isStale(Permission permission) {
+        // The outcome of a call let through before the last state change says nothing about the current state
+        return permission.generation != generation;
+    }
+
+    private void record(boolean failed) {
+        if (recordedCalls == outcomes.length) {
+            // The window is full, so the oldest outcome drops out
+            if (outcomes[nextOutcome]) {
+                failedCalls--;
+            }
+        } else {
+            recordedCalls++;
+        }
+
+        outcomes[nextOutcome] = failed;
+        if (failed) {
+            failedCalls++;
+        }
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+    }
+
+    private void transitionTo(State newState) {
+        logger.warn("Circuit breaker of the {} gateway changed from {} to {}", name, state, newState);
+        state = newState;
+        generation++;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (newState == State.CLOSED) {
+            // Start with a clean window, so the failures that opened the breaker do not count again
+            nextOutcome = 0;
+            recordedCalls = 0;
+            failedCalls = 0;
+        }
+    }
+}
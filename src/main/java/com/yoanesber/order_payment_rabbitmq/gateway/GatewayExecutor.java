@@ -0,0 +1,211 @@
+package com.yoanesber.order_payment_rabbitmq.gateway;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+import com.yoanesber.order_payment_rabbitmq.publisher.PublishContext;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * GatewayExecutor isolates the payment gateways from each other, so a slow or failing gateway
+ * does not take the other payment methods down with it.
+ * Every gateway has its own bulkhead: a concurrency limit that callers wait on for at most the bulkhead max-wait
+ * before they are rejected, instead of piling up behind a slow gateway.
+ * Every gateway has its own circuit breaker, which rejects calls right away while the gateway keeps failing
+ * and lets probe calls through once the open duration has passed.
+ * Every call is cancelled once the gateway's timeout elapses. When virtual threads are enabled, calls run on the
+ * virtual-thread gateway executor; otherwise each gateway has a dedicated pool of platform threads.
+ * Rejected and timed-out calls throw GatewayUnavailableException.
+ */
+
+@Component
+public class GatewayExecutor {
+
+    @Value("${order-payment.gateway.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${order-payment.gateway.bulkhead.max-wait:100}")
+    private long bulkheadMaxWait;
+
+    @Value("${order-payment.gateway.circuit-breaker.enabled:true}")
+    private boolean circuitBreakerEnabled;
+
+    @Value("${order-payment.gateway.circuit-breaker.window-size:20}")
+    private int circuitBreakerWindowSize;
+
+    @Value("${order-payment.gateway.circuit-breaker.minimum-calls:10}")
+    private int circuitBreakerMinimumCalls;
+
+    @Value("${order-payment.gateway.circuit-breaker.failure-rate-threshold:50}")
+    private int circuitBreakerFailureRateThreshold;
+
+    @Value("${order-payment.gateway.circuit-breaker.open-duration:30000}")
+    private long circuitBreakerOpenDuration;
+
+    @Value("${order-payment.gateway.circuit-breaker.half-open-probes:3}")
+    private int circuitBreakerHalfOpenProbes;
+
+    private final ExecutorService gatewayExecutor;
+
+    private final PaymentGatewayRegistry paymentGatewayRegistry;
+
+    private final PaymentMetrics paymentMetrics;
+
+    private final Map<PaymentMethod, Semaphore> bulkheads = new EnumMap<>(PaymentMethod.class);
+
+    private final Map<PaymentMethod, CircuitBreaker> circuitBreakers = new EnumMap<>(PaymentMethod.class);
+
+    // Dedicated platform thread pools, only used when virtual threads are disabled
+    private final Map<PaymentMethod, ExecutorService> platformExecutors = new EnumMap<>(PaymentMethod.class);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public GatewayExecutor(@Qualifier("gatewayThreadExecutor") ExecutorService gatewayExecutor, 
+        PaymentGatewayRegistry paymentGatewayRegistry, PaymentMetrics paymentMetrics) {
+        this.gatewayExecutor = gatewayExecutor;
+        this.paymentGatewayRegistry = paymentGatewayRegistry;
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.isTrue(circuitBreakerWindowSize > 0, "Circuit breaker window size must be greater than zero");
+        Assert.isTrue(circuitBreakerHalfOpenProbes > 0, "Circuit breaker half-open probes must be greater than zero");
+
+        for (PaymentGateway paymentGateway : paymentGatewayRegistry.getGateways()) {
+            PaymentMethod paymentMethod = paymentGateway.getPaymentMethod();
+            int maxConcurrency = paymentGateway.getMaxConcurrency();
+            Assert.isTrue(maxConcurrency > 0, "Max concurrency of the " + paymentMethod + " gateway must be greater than zero");
+            Assert.isTrue(paymentGateway.getTimeout() > 0, "Timeout of the " + paymentMethod + " gateway must be greater than zero");
+
+            bulkheads.put(paymentMethod, new Semaphore(maxConcurrency));
+
+            CircuitBreaker circuitBreaker = new CircuitBreaker(paymentMethod.name(), circuitBreakerWindowSize, 
+                circuitBreakerMinimumCalls, circuitBreakerFailureRateThreshold, circuitBreakerOpenDuration, circuitBreakerHalfOpenProbes);
+            circuitBreakers.put(paymentMethod, circuitBreaker);
+            paymentMetrics.registerGatewayCircuitState(paymentMethod.name(), () -> circuitBreaker.getState().ordinal());
+
+            if (!virtualThreads) {
+                // The bulkhead already bounds the number of calls, so the pool never queues; idle threads time out
+                ThreadPoolExecutor platformExecutor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), 
+                    Thread.ofPlatform().name("gateway-" + paymentMethod.getKey() + "-", 0).factory());
+                platformExecutor.allowCoreThreadTimeOut(true);
+                platformExecutors.put(paymentMethod, platformExecutor);
+            }
+        }
+        logger.info("Payment gateway calls run on {}", virtualThreads ? "virtual threads" : "dedicated platform thread pools");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        platformExecutors.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Executes a gateway call within the bulkhead, circuit breaker and timeout of the payment gateway.
+     * A null result is counted as a failed call by the circuit breaker.
+     *
+     * @param paymentGateway The payment gateway that is called.
+     * @param gatewayCall    The gateway call to execute.
+     * @return The result of the gateway call.
+     * @throws GatewayUnavailableException If the call is rejected by the bulkhead or circuit breaker, or times out.
+     */
+    public <T> T execute(PaymentGateway paymentGateway, Supplier<T> gatewayCall) {
+        Assert.notNull(paymentGateway, "Payment gateway must not be null");
+        Assert.notNull(gatewayCall, "Gateway call must not be null");
+
+        PaymentMethod paymentMethod = paymentGateway.getPaymentMethod();
+        Semaphore bulkhead = bulkheads.get(paymentMethod);
+        Assert.notNull(bulkhead, "No gateway registered for payment method: " + paymentMethod);
+
+        try {
+            if (!bulkhead.tryAcquire(bulkheadMaxWait, TimeUnit.MILLISECONDS)) {
+                paymentMetrics.recordGatewayRejection(paymentMethod.name(), "bulkhead-full");
+                throw new GatewayUnavailableException("All " + paymentGateway.getMaxConcurrency() + " slots of the " + 
+                    paymentMethod + " gateway are busy");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a " + paymentMethod + " gateway slot", e);
+        }
+
+        try {
+            // Take the breaker permission only after the bulkhead slot, so a rejected call never holds a half-open probe
+            CircuitBreaker circuitBreaker = circuitBreakers.get(paymentMethod);
+            CircuitBreaker.Permission permission = circuitBreakerEnabled ? circuitBreaker.tryAcquirePermission() : null;
+            if (circuitBreakerEnabled && permission == null) {
+                paymentMetrics.recordGatewayRejection(paymentMethod.name(), "circuit-open");
+                throw new GatewayUnavailableException("Circuit breaker of the " + paymentMethod + " gateway is open");
+            }
+
+            return this.call(paymentGateway, circuitBreaker, permission, gatewayCall);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private <T> T call(PaymentGateway paymentGateway, CircuitBreaker circuitBreaker, CircuitBreaker.Permission permission,
+        Supplier<T> gatewayCall) {
+        PaymentMethod paymentMethod = paymentGateway.getPaymentMethod();
+        ExecutorService executor = virtualThreads ? gatewayExecutor : platformExecutors.get(paymentMethod);
+
+        // Carry the publish headers over, so events published from the gateway thread keep them
+        // A plain Future is used because cancelling it interrupts the gateway thread, unlike a CompletableFuture
+        Supplier<T> wrappedCall = PublishContext.wrap(gatewayCall);
+        Future<T> future = executor.submit(wrappedCall::get);
+
+        boolean success = false;
+        boolean recorded = true;
+        try {
+            T result = future.get(paymentGateway.getTimeout(), TimeUnit.MILLISECONDS);
+            success = result != null;
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            paymentMetrics.recordGatewayRejection(paymentMethod.name(), "timeout");
+            throw new GatewayUnavailableException(paymentMethod + " gateway call timed out after " + 
+                paymentGateway.getTimeout() + " ms", e);
+        } catch (InterruptedException e) {
+            // The caller was interrupted, which says nothing about the health of the gateway
+            future.cancel(true);
+            recorded = false;
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the " + paymentMethod + " gateway", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (circuitBreakerEnabled) {
+                if (!recorded) {
+                    circuitBreaker.releasePermission(permission);
+                } else if (success) {
+                    circuitBreaker.onSuccess(permission);
+                } else {
+                    circuitBreaker.onFailure(permission);
+                }
+            }
+        }
+    }
+}
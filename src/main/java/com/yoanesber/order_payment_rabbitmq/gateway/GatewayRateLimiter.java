@@ -0,0 +1,121 @@
+package com.yoanesber.order_payment_rabbitmq.gateway;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * GatewayRateLimiter keeps the calls to every payment gateway within the gateway's TPS quota.
+ * Each gateway with a rate limit gets its own TokenBucket; gateways without one are never limited.
+ * The limit applies per application instance.
+ */
+
+@Component
+public class GatewayRateLimiter {
+
+    // Upper bound of a single sleep while waiting for a token, so an interrupt or a freed token is noticed quickly
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final PaymentGatewayRegistry paymentGatewayRegistry;
+
+    private final PaymentMetrics paymentMetrics;
+
+    private final Map<PaymentMethod, TokenBucket> tokenBuckets = new EnumMap<>(PaymentMethod.class);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public GatewayRateLimiter(PaymentGatewayRegistry paymentGatewayRegistry, PaymentMetrics paymentMetrics) {
+        this.paymentGatewayRegistry = paymentGatewayRegistry;
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (PaymentGateway paymentGateway : paymentGatewayRegistry.getGateways()) {
+            if (paymentGateway.getRateLimit() <= 0) {
+                continue;
+            }
+
+            PaymentMethod paymentMethod = paymentGateway.getPaymentMethod();
+            TokenBucket tokenBucket = new TokenBucket(paymentGateway.getRateLimit(), paymentGateway.getRateLimitBurst());
+            tokenBuckets.put(paymentMethod, tokenBucket);
+            paymentMetrics.registerRateLimitTokens(paymentMethod.name(), tokenBucket::getAvailableTokens);
+            logger.info("{} gateway is limited to {} calls per second (burst {})", 
+                paymentMethod, paymentGateway.getRateLimit(), paymentGateway.getRateLimitBurst());
+        }
+    }
+
+    /**
+     * Takes a token of the payment method's gateway without waiting.
+     *
+     * @return true if a token was taken or the gateway is not rate limited.
+     */
+    public boolean tryAcquire(PaymentMethod paymentMethod) {
+        TokenBucket tokenBucket = tokenBuckets.get(paymentMethod);
+        return tokenBucket == null || tokenBucket.tryConsume();
+    }
+
+    /**
+     * Takes a token of the payment method's gateway, waiting for at most maxWait milliseconds.
+     *
+     * @return true if a token was taken or the gateway is not rate limited.
+     */
+    public boolean acquire(PaymentMethod paymentMethod, long maxWait) {
+        TokenBucket tokenBucket = tokenBuckets.get(paymentMethod);
+        if (tokenBucket == null) {
+            return true;
+        }
+
+        long startNanos = System.nanoTime();
+        if (!this.waitForToken(tokenBucket, TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWait)))) {
+            paymentMetrics.recordGatewayRejection(paymentMethod.name(), "rate-limited");
+            return false;
+        }
+
+        paymentMetrics.recordRateLimitWait(paymentMethod.name(), "sync", System.nanoTime() - startNanos);
+        return true;
+    }
+
+    /**
+     * Takes a token of the payment method's gateway for a request that was parked on its holding queue,
+     * waiting as long as it takes. The recorded wait time includes the time the request spent parked.
+     *
+     * @param parkedAt The epoch milliseconds at which the request was parked, or null if unknown.
+     * @return true if a token was taken or the gateway is not rate limited; false if the thread was interrupted.
+     */
+    public boolean acquireParked(PaymentMethod paymentMethod, Long parkedAt) {
+        TokenBucket tokenBucket = tokenBuckets.get(paymentMethod);
+        if (tokenBucket != null && !this.waitForToken(tokenBucket, Long.MAX_VALUE)) {
+            return false;
+        }
+
+        if (parkedAt != null) {
+            paymentMetrics.recordRateLimitWait(paymentMethod.name(), "parked", 
+                TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - parkedAt));
+        }
+        return true;
+    }
+
+    private boolean waitForToken(TokenBucket tokenBucket, long maxWaitNanos) {
+        long startNanos = System.nanoTime();
+        while (!tokenBucket.tryConsume()) {
+            long remainingNanos = maxWaitNanos - (System.nanoTime() - startNanos);
+            if (remainingNanos <= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+
+            // Several callers may wake up for the same token, so the loop checks again after sleeping
+            LockSupport.parkNanos(Math.min(Math.min(tokenBucket.nanosUntilNextToken(), MAX_PARK_NANOS), remainingNanos));
+        }
+        return true;
+    }
+}
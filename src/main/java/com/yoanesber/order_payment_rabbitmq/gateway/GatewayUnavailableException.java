@@ -0,0 +1,17 @@
+package com.yoanesber.order_payment_rabbitmq.gateway;
+
+/**
+ * GatewayUnavailableException is thrown by GatewayExecutor when a gateway call is not made or not completed:
+ * its circuit breaker is open, its bulkhead has no free slot, or the call timed out.
+ */
+
+public class GatewayUnavailableException extends IllegalStateException {
+
+    public GatewayUnavailableException(String message) {
+        super(message);
+    }
+
+    public GatewayUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
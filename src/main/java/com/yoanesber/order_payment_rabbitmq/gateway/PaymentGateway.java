@@ -0,0 +1,32 @@
+package com.yoanesber.order_payment_rabbitmq.gateway;
+
+import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentResponseDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+
+public interface PaymentGateway {
+    // The payment method this gateway handles.
+    PaymentMethod getPaymentMethod();
+
+    // Maximum number of concurrent calls to this gateway.
+    int getMaxConcurrency();
+
+    // Timeout of a single call to this gateway, in milliseconds.
+    long getTimeout();
+
+    // Calls per second the gateway accepts; zero or less means unlimited.
+    double getRateLimit();
+
+    // Number of calls that may be made at once after the gateway has been idle.
+    int getRateLimitBurst();
+
+    // Validate the method-specific fields of a payment request; throws IllegalArgumentException if one is invalid.
+    void validate(CreateOrderPaymentRequestDTO orderPaymentDTO);
+
+    // Call the payment gateway; returns null if the call could not be completed.
+    PaymentResponseDTO process(CreateOrderPaymentRequestDTO orderPaymentDTO);
+
+    // Copy the method-specific payment details of the request onto the order payment.
+    void copyPaymentDetails(CreateOrderPaymentRequestDTO orderPaymentDTO, OrderPayment orderPayment);
+}
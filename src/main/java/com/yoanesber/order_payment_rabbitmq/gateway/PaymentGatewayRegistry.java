@@ -0,0 +1,45 @@
+package com.yoanesber.order_payment_rabbitmq.gateway;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+
+/**
+ * PaymentGatewayRegistry maps every PaymentMethod to the PaymentGateway bean that handles it.
+ * The gateways are collected from the application context, so a new payment method is added
+ * by declaring another PaymentGateway bean, without touching OrderPaymentServiceImpl.
+ * Lookups are a single EnumMap (array) access.
+ */
+
+@Component
+public class PaymentGatewayRegistry {
+
+    private final Map<PaymentMethod, PaymentGateway> paymentGateways = new EnumMap<>(PaymentMethod.class);
+
+    public PaymentGatewayRegistry(List<PaymentGateway> paymentGateways) {
+        for (PaymentGateway paymentGateway : paymentGateways) {
+            PaymentGateway previous = this.paymentGateways.put(paymentGateway.getPaymentMethod(), paymentGateway);
+            Assert.isNull(previous, "More than one gateway registered for payment method: " + paymentGateway.getPaymentMethod());
+        }
+    }
+
+    /**
+     * Returns the gateway of a payment method, or null if none is registered.
+     */
+    public PaymentGateway getGateway(PaymentMethod paymentMethod) {
+        return paymentMethod != null ? paymentGateways.get(paymentMethod) : null;
+    }
+
+    /**
+     * Returns every registered gateway.
+     */
+    public Collection<PaymentGateway> getGateways() {
+        return Collections.unmodifiableCollection(paymentGateways.values());
+    }
+}
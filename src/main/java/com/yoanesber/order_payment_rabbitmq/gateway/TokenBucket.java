@@ -0,0 +1,69 @@
+package com.yoanesber.order_payment_rabbitmq.gateway;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * TokenBucket limits the rate of calls to a payment gateway.
+ * The bucket holds up to burst tokens and is refilled continuously at permitsPerSecond;
+ * every call takes one token, so a burst of calls is allowed after an idle period
+ * and the long-term rate never exceeds permitsPerSecond.
+ */
+
+public class TokenBucket {
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    // Source of System.nanoTime-style timestamps
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+
+    private long lastRefill;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    // Package-private, so TokenBucketTest can drive the refill with its own clock
+    TokenBucket(double permitsPerSecond, int burst, LongSupplier nanoClock) {
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes a token if one is available.
+     */
+    public synchronized boolean tryConsume() {
+        this.refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Returns how long it takes until the next token is available, or zero if one is available now.
+     */
+    public synchronized long nanosUntilNextToken() {
+        this.refill();
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    public synchronized double getAvailableTokens() {
+        this.refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
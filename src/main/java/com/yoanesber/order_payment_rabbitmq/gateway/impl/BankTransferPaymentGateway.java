@@ -0,0 +1,85 @@
+package com.yoanesber.order_payment_rabbitmq.gateway.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentBankRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentResponseDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+import com.yoanesber.order_payment_rabbitmq.util.SnowflakeIdGenerator;
+
+/**
+ * BankTransferPaymentGateway validates and processes bank transfer payments.
+ */
+
+@Component
+public class BankTransferPaymentGateway extends SimulatedPaymentGateway {
+
+    @Value("${order-payment.gateway.bank-transfer.max-concurrency:1000}")
+    private int maxConcurrency;
+
+    @Value("${order-payment.gateway.bank-transfer.timeout:5000}")
+    private long timeout;
+
+    @Value("${order-payment.gateway.bank-transfer.rate-limit:0}")
+    private double rateLimit;
+
+    @Value("${order-payment.gateway.bank-transfer.rate-limit-burst:10}")
+    private int rateLimitBurst;
+
+    public BankTransferPaymentGateway(SnowflakeIdGenerator idGenerator) {
+        super(idGenerator);
+    }
+
+    @Override
+    public PaymentMethod getPaymentMethod() {
+        return PaymentMethod.BANK_TRANSFER;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    @Override
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    @Override
+    public void validate(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        Assert.notNull(orderPaymentDTO.getBankAccount(), "Bank account must not be null");
+        Assert.notNull(orderPaymentDTO.getBankName(), "Bank name must not be null");
+    }
+
+    @Override
+    public PaymentResponseDTO process(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        PaymentBankRequestDTO paymentBankRequestDTO = new PaymentBankRequestDTO(orderPaymentDTO.getOrderId(), 
+            orderPaymentDTO.getAmount(), 
+            orderPaymentDTO.getCurrency(),
+            orderPaymentDTO.getBankAccount(),
+            orderPaymentDTO.getBankName());
+
+        // Call the bank transfer payment gateway API
+        return this.simulateCall(paymentBankRequestDTO.getOrderId());
+    }
+
+    @Override
+    public void copyPaymentDetails(CreateOrderPaymentRequestDTO orderPaymentDTO, OrderPayment orderPayment) {
+        orderPayment.setBankAccount(orderPaymentDTO.getBankAccount());
+        orderPayment.setBankName(orderPaymentDTO.getBankName());
+    }
+}
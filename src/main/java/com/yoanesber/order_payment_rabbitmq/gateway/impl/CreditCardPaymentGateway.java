@@ -0,0 +1,96 @@
+package com.yoanesber.order_payment_rabbitmq.gateway.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentCCRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentResponseDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+import com.yoanesber.order_payment_rabbitmq.util.SnowflakeIdGenerator;
+
+/**
+ * CreditCardPaymentGateway validates and processes credit card payments.
+ * The full card number and the CVV are only passed to the gateway call; the order payment keeps a masked card number.
+ */
+
+@Component
+public class CreditCardPaymentGateway extends SimulatedPaymentGateway {
+
+    private static final String MASKED_CARD_NUMBER_PREFIX = "**** **** **** ";
+
+    @Value("${order-payment.gateway.credit-card.max-concurrency:1000}")
+    private int maxConcurrency;
+
+    @Value("${order-payment.gateway.credit-card.timeout:5000}")
+    private long timeout;
+
+    @Value("${order-payment.gateway.credit-card.rate-limit:0}")
+    private double rateLimit;
+
+    @Value("${order-payment.gateway.credit-card.rate-limit-burst:10}")
+    private int rateLimitBurst;
+
+    public CreditCardPaymentGateway(SnowflakeIdGenerator idGenerator) {
+        super(idGenerator);
+    }
+
+    @Override
+    public PaymentMethod getPaymentMethod() {
+        return PaymentMethod.CREDIT_CARD;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    @Override
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    @Override
+    public void validate(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        Assert.notNull(orderPaymentDTO.getCardNumber(), "Card number must not be null");
+        Assert.notNull(orderPaymentDTO.getCardExpiry(), "Card expiry date must not be null");
+        Assert.notNull(orderPaymentDTO.getCardCvv(), "Card CVV must not be null");
+    }
+
+    @Override
+    public PaymentResponseDTO process(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        PaymentCCRequestDTO paymentCCRequestDTO = new PaymentCCRequestDTO(orderPaymentDTO.getOrderId(), 
+            orderPaymentDTO.getAmount(), 
+            orderPaymentDTO.getCurrency(),
+            orderPaymentDTO.getCardNumber(),
+            orderPaymentDTO.getCardExpiry(),
+            orderPaymentDTO.getCardCvv());
+
+        // Call the credit card payment gateway API
+        return this.simulateCall(paymentCCRequestDTO.getOrderId());
+    }
+
+    @Override
+    public void copyPaymentDetails(CreateOrderPaymentRequestDTO orderPaymentDTO, OrderPayment orderPayment) {
+        // The order payment is stored and published, so it only keeps the last 4 digits of the card number and never the CVV
+        orderPayment.setCardNumber(this.maskCardNumber(orderPaymentDTO.getCardNumber()));
+        orderPayment.setCardExpiry(orderPaymentDTO.getCardExpiry());
+    }
+
+    private String maskCardNumber(String cardNumber) {
+        String digits = cardNumber.replaceAll("\\D", "");
+        return MASKED_CARD_NUMBER_PREFIX + digits.substring(Math.max(0, digits.length() - 4));
+    }
+}
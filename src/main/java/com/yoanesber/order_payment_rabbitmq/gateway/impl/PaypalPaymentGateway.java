@@ -0,0 +1,82 @@
+package com.yoanesber.order_payment_rabbitmq.gateway.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentPaypalRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentResponseDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+import com.yoanesber.order_payment_rabbitmq.util.SnowflakeIdGenerator;
+
+/**
+ * PaypalPaymentGateway validates and processes PayPal payments.
+ */
+
+@Component
+public class PaypalPaymentGateway extends SimulatedPaymentGateway {
+
+    @Value("${order-payment.gateway.paypal.max-concurrency:1000}")
+    private int maxConcurrency;
+
+    @Value("${order-payment.gateway.paypal.timeout:5000}")
+    private long timeout;
+
+    @Value("${order-payment.gateway.paypal.rate-limit:0}")
+    private double rateLimit;
+
+    @Value("${order-payment.gateway.paypal.rate-limit-burst:10}")
+    private int rateLimitBurst;
+
+    public PaypalPaymentGateway(SnowflakeIdGenerator idGenerator) {
+        super(idGenerator);
+    }
+
+    @Override
+    public PaymentMethod getPaymentMethod() {
+        return PaymentMethod.PAYPAL;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    @Override
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    @Override
+    public void validate(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        Assert.notNull(orderPaymentDTO.getPaypalEmail(), "PayPal email must not be null");
+    }
+
+    @Override
+    public PaymentResponseDTO process(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        PaymentPaypalRequestDTO paymentPaypalRequestDTO = new PaymentPaypalRequestDTO(orderPaymentDTO.getOrderId(), 
+            orderPaymentDTO.getAmount(), 
+            orderPaymentDTO.getCurrency(),
+            orderPaymentDTO.getPaypalEmail());
+
+        // Call the PayPal payment gateway API
+        return this.simulateCall(paymentPaypalRequestDTO.getOrderId());
+    }
+
+    @Override
+    public void copyPaymentDetails(CreateOrderPaymentRequestDTO orderPaymentDTO, OrderPayment orderPayment) {
+        orderPayment.setPaypalEmail(orderPaymentDTO.getPaypalEmail());
+    }
+}
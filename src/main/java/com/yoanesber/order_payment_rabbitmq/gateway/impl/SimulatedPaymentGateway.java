@@ -0,0 +1,54 @@
+package com.yoanesber.order_payment_rabbitmq.gateway.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentResponseDTO;
+import com.yoanesber.order_payment_rabbitmq.gateway.PaymentGateway;
+import com.yoanesber.order_payment_rabbitmq.util.SnowflakeIdGenerator;
+
+/**
+ * SimulatedPaymentGateway is the base class of the simulated credit card, PayPal and bank transfer gateways.
+ * A gateway call sleeps for the simulated latency and then returns a successful transaction,
+ * whose transaction id comes from SnowflakeIdGenerator.
+ */
+
+public abstract class SimulatedPaymentGateway implements PaymentGateway {
+
+    @Value("${order-payment.gateway.simulated-latency:2000}")
+    private long simulatedLatency;
+
+    private final SnowflakeIdGenerator idGenerator;
+
+    protected final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    protected SimulatedPaymentGateway(SnowflakeIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    protected PaymentResponseDTO simulateCall(String orderId) {
+        try {
+            // Simulate processing the payment
+            Thread.sleep(simulatedLatency); // Simulate the gateway delay (2 seconds by default)
+
+            // For simplicity, the transaction ID is generated locally
+            String transactionId = "TXN" + idGenerator.nextId();
+            String paymentStatus = "SUCCESS"; // Assume payment is successful
+
+            // Check if the transaction ID is empty
+            // Payment status can be "SUCCESS" or "FAILED"; If failed, run scheduled job to retry payment
+            if (transactionId == null || transactionId.isEmpty()) {
+                paymentStatus = "FAILED";
+            }
+
+            return new PaymentResponseDTO(transactionId, paymentStatus);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Error processing {} payment for order {}: {}", getPaymentMethod().getLabel(), orderId, e.getMessage());
+
+            // Return null to indicate failure
+            return null;
+        }
+    }
+}
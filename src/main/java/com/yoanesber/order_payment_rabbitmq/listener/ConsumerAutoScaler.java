@@ -0,0 +1,164 @@
+package com.yoanesber.order_payment_rabbitmq.listener;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * ConsumerAutoScaler widens or narrows the consumers of the payment success and failed queues based on queue depth.
+ * The depth is read passively (queue.declare passive) through AmqpAdmin.getQueueInfo, so the scaler never creates queues.
+ * It targets one consumer per messages-per-consumer waiting messages, within the configured consumer range,
+ * and moves the consumer count at most one step per interval, so a short burst does not start every consumer at once.
+ * Simple containers are scaled through their concurrent consumers, between concurrent-consumers and max-concurrent-consumers.
+ * Direct containers are scaled through their consumers per queue, between consumers-per-queue and max-consumers-per-queue;
+ * since every queue of a direct container gets that many consumers, the target is divided over its queues.
+ * The success listeners consume from paymentSuccessListenerQueues, i.e. every shard queue when sharding is enabled,
+ * so the success depth is the total over those queues.
+ */
+
+@Component
+public class ConsumerAutoScaler {
+
+    @Value("${spring.rabbitmq.order-payment.listener.autoscale.enabled:false}")
+    private boolean enabled;
+
+    @Value("${spring.rabbitmq.order-payment.listener.autoscale.messages-per-consumer:1000}")
+    private int messagesPerConsumer;
+
+    @Value("${spring.rabbitmq.order-payment.listener.autoscale.step:1}")
+    private int step;
+
+    @Value("${spring.rabbitmq.order-payment.payment-failed-queue-name}")
+    private String paymentFailedQueueName;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.concurrent-consumers:1}")
+    private int successMinConsumers;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.max-concurrent-consumers:1}")
+    private int successMaxConsumers;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.concurrent-consumers:1}")
+    private int failedMinConsumers;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.max-concurrent-consumers:1}")
+    private int failedMaxConsumers;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.consumers-per-queue:1}")
+    private int successMinConsumersPerQueue;
+
+    @Value("${spring.rabbitmq.order-payment.listener.success.max-consumers-per-queue:${spring.rabbitmq.order-payment.listener.success.consumers-per-queue:1}}")
+    private int successMaxConsumersPerQueue;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.consumers-per-queue:1}")
+    private int failedMinConsumersPerQueue;
+
+    @Value("${spring.rabbitmq.order-payment.listener.failed.max-consumers-per-queue:${spring.rabbitmq.order-payment.listener.failed.consumers-per-queue:1}}")
+    private int failedMaxConsumersPerQueue;
+
+    private final String[] paymentSuccessListenerQueues;
+
+    private final RabbitListenerEndpointRegistry listenerEndpointRegistry;
+
+    private final AmqpAdmin amqpAdmin;
+
+    // Consumer count last applied to each listener container, keyed by listener id
+    private final Map<String, Integer> consumerTargets = new ConcurrentHashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public ConsumerAutoScaler(@Qualifier("paymentSuccessListenerQueues") String[] paymentSuccessListenerQueues,
+        RabbitListenerEndpointRegistry listenerEndpointRegistry, AmqpAdmin amqpAdmin) {
+        this.paymentSuccessListenerQueues = paymentSuccessListenerQueues;
+        this.listenerEndpointRegistry = listenerEndpointRegistry;
+        this.amqpAdmin = amqpAdmin;
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.isTrue(messagesPerConsumer > 0, "Messages per consumer must be greater than zero");
+        Assert.isTrue(step > 0, "Auto-scaling step must be greater than zero");
+    }
+
+    @Scheduled(fixedDelayString = "${spring.rabbitmq.order-payment.listener.autoscale.interval:5000}")
+    public void scale() {
+        if (!enabled) {
+            return;
+        }
+
+        this.scaleQueues(Arrays.asList(paymentSuccessListenerQueues), successMinConsumers, successMaxConsumers,
+            successMinConsumersPerQueue, successMaxConsumersPerQueue);
+        this.scaleQueues(List.of(paymentFailedQueueName), failedMinConsumers, failedMaxConsumers,
+            failedMinConsumersPerQueue, failedMaxConsumersPerQueue);
+    }
+
+    private void scaleQueues(List<String> queueNames, int minConsumers, int maxConsumers,
+        int minConsumersPerQueue, int maxConsumersPerQueue) {
+        long depth = 0;
+        for (String queueName : queueNames) {
+            QueueInformation queueInformation;
+            try {
+                queueInformation = amqpAdmin.getQueueInfo(queueName);
+            } catch (Exception e) {
+                logger.warn("Failed to read the depth of queue {}: {}", queueName, e.getMessage());
+                return;
+            }
+
+            if (queueInformation == null) {
+                logger.warn("Queue {} does not exist, skipping auto-scaling", queueName);
+                return;
+            }
+            depth += queueInformation.getMessageCount();
+        }
+
+        // One consumer per messagesPerConsumer waiting messages
+        long wanted = (depth + messagesPerConsumer - 1) / messagesPerConsumer;
+
+        for (MessageListenerContainer container : listenerEndpointRegistry.getListenerContainers()) {
+            if (!(container instanceof AbstractMessageListenerContainer listenerContainer) || !listenerContainer.isRunning()
+                    || Collections.disjoint(Arrays.asList(listenerContainer.getQueueNames()), queueNames)) {
+                continue;
+            }
+
+            // Keep the target within the consumer range of the container type
+            boolean direct = listenerContainer instanceof DirectMessageListenerContainer;
+            int min = direct ? minConsumersPerQueue : minConsumers;
+            int max = direct ? maxConsumersPerQueue : maxConsumers;
+            int queueCount = Math.max(1, listenerContainer.getQueueNames().length);
+            long target = direct ? (wanted + queueCount - 1) / queueCount : wanted;
+            int desired = (int) Math.max(min, Math.min(max, target));
+
+            int current = consumerTargets.getOrDefault(listenerContainer.getListenerId(), min);
+            int next = desired > current ? Math.min(desired, current + step) : Math.max(desired, current - step);
+            if (next == current) {
+                continue;
+            }
+
+            logger.info("Scaling consumers of queues {} from {} to {} (depth: {})", 
+                queueNames, current, next, depth);
+            if (listenerContainer instanceof SimpleMessageListenerContainer simpleContainer) {
+                simpleContainer.setConcurrentConsumers(next);
+            } else if (listenerContainer instanceof DirectMessageListenerContainer directContainer) {
+                directContainer.setConsumersPerQueue(next);
+            }
+            consumerTargets.put(listenerContainer.getListenerId(), next);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.yoanesber.order_payment_rabbitmq.listener;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * HoldingQueueMonitor exposes how many rate-limited payment requests are parked on each gateway's holding queue.
+ * The depth is read passively through AmqpAdmin.getQueueInfo on a schedule, like ConsumerAutoScaler does,
+ * so scraping the payment.ratelimit.parked gauge never waits on the broker.
+ */
+
+@Component
+public class HoldingQueueMonitor {
+
+    @Value("${spring.rabbitmq.order-payment.payment-request-queue-name:order.payment.requests.queue}")
+    private String paymentRequestQueueName;
+
+    private final AmqpAdmin amqpAdmin;
+
+    private final PaymentMetrics paymentMetrics;
+
+    // Last depth read from each holding queue
+    private final Map<PaymentMethod, AtomicLong> parkedDepths = new EnumMap<>(PaymentMethod.class);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public HoldingQueueMonitor(AmqpAdmin amqpAdmin, PaymentMetrics paymentMetrics) {
+        this.amqpAdmin = amqpAdmin;
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (PaymentMethod paymentMethod : PaymentMethod.values()) {
+            AtomicLong parkedDepth = new AtomicLong();
+            parkedDepths.put(paymentMethod, parkedDepth);
+            paymentMetrics.registerRateLimitParked(paymentMethod.name(), parkedDepth::get);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${order-payment.gateway.rate-limit.depth-interval:5000}")
+    public void readParkedDepths() {
+        parkedDepths.forEach((paymentMethod, parkedDepth) -> {
+            String queueName = paymentRequestQueueName + ".holding." + paymentMethod.getKey();
+            try {
+                QueueInformation queueInformation = amqpAdmin.getQueueInfo(queueName);
+                if (queueInformation != null) {
+                    parkedDepth.set(queueInformation.getMessageCount());
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to read the depth of holding queue {}: {}", queueName, e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package com.yoanesber.order_payment_rabbitmq.listener;
+
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.order_payment_rabbitmq.entity.CustomException;
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+import com.yoanesber.order_payment_rabbitmq.publisher.PublishContext;
+import com.yoanesber.order_payment_rabbitmq.repository.OrderRepository;
+import com.yoanesber.order_payment_rabbitmq.service.PaymentStatusService;
+import com.yoanesber.order_payment_rabbitmq.tracing.TraceHeaders;
+
+/**
+ * PaymentBatchListener is the batch consumer mode of PaymentListener.
+ * When spring.rabbitmq.order-payment.listener.batch-enabled=true, it receives typed batches of OrderPayment
+ * and CustomException events instead of one raw message at a time, and each batch is acknowledged once.
+ * Downstream work such as database updates and notifications can then be done in bulk.
+ * End-to-end latency and queue-residence time are recorded for every message of a batch.
+ */
+
+@Component
+public class PaymentBatchListener {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final PaymentStatusService paymentStatusService;
+
+    private final PaymentMetrics paymentMetrics;
+
+    private final OrderRepository orderRepository;
+
+    public PaymentBatchListener(PaymentStatusService paymentStatusService, PaymentMetrics paymentMetrics,
+        OrderRepository orderRepository) {
+        this.paymentStatusService = paymentStatusService;
+        this.paymentMetrics = paymentMetrics;
+        this.orderRepository = orderRepository;
+    }
+
+    @RabbitListener(queues = "#{@paymentSuccessListenerQueues}", containerFactory = "successQueueBatchFactory", 
+        autoStartup = "${spring.rabbitmq.order-payment.listener.batch-enabled:false}")
+    public void handleSuccessBatch(List<Message<OrderPayment>> messages) {
+        logger.info("Processing batch of {} payment success messages", messages.size());
+
+        // Process the batch
+        // For example, update the order statuses in the database with a single bulk update
+        for (Message<OrderPayment> message : messages) {
+            this.recordDelivery(message.getHeaders());
+            OrderPayment orderPayment = message.getPayload();
+            if (orderPayment.getOrderId() != null) {
+                orderRepository.markPaid(orderPayment.getOrderId());
+            }
+
+            String paymentHandle = message.getHeaders().get(PublishContext.PAYMENT_HANDLE_HEADER, String.class);
+            if (paymentHandle != null) {
+                paymentStatusService.markSucceeded(paymentHandle, orderPayment.getOrderId(), orderPayment.getTransactionId());
+            }
+        }
+    }
+
+    @RabbitListener(queues = "order.payment.failed.queue", containerFactory = "failedQueueBatchFactory", 
+        autoStartup = "${spring.rabbitmq.order-payment.listener.batch-enabled:false}")
+    public void handleFailedBatch(List<Message<CustomException>> messages) {
+        logger.info("Processing batch of {} payment failed messages", messages.size());
+
+        // Process the batch
+        // For example, log the errors or send a single aggregated alert
+        for (Message<CustomException> message : messages) {
+            this.recordDelivery(message.getHeaders());
+            CustomException customException = message.getPayload();
+            String paymentHandle = message.getHeaders().get(PublishContext.PAYMENT_HANDLE_HEADER, String.class);
+            if (paymentHandle != null) {
+                paymentStatusService.markFailed(paymentHandle, customException.getMessage());
+            }
+        }
+    }
+
+    private void recordDelivery(MessageHeaders headers) {
+        paymentMetrics.recordDelivery(headers.get(AmqpHeaders.CONSUMER_QUEUE, String.class),
+            headers.get(TraceHeaders.REQUEST_START_HEADER, Number.class), headers.get(TraceHeaders.PUBLISHED_AT_HEADER, Number.class));
+    }
+}
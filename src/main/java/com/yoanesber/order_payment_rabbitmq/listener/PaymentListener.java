@@ -1,21 +1,36 @@
 package com.yoanesber.order_payment_rabbitmq.listener;
 
-import java.util.Map;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.retry.RetryContext;
 import org.springframework.retry.support.RetrySynchronizationManager;
 import org.springframework.stereotype.Component;
 
-import com.yoanesber.order_payment_rabbitmq.util.HelperUtil;
+import com.yoanesber.order_payment_rabbitmq.converter.PayloadSerializer;
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentEventSummaryDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.CustomException;
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+import com.yoanesber.order_payment_rabbitmq.publisher.PublishContext;
+import com.yoanesber.order_payment_rabbitmq.repository.OrderRepository;
+import com.yoanesber.order_payment_rabbitmq.service.PaymentStatusService;
+import com.yoanesber.order_payment_rabbitmq.tracing.TraceHeaders;
 
 /**
  * PaymentListener is a component that listens for messages from RabbitMQ queues related to order payment processing.
  * It handles both successful and failed payment messages.
  * The class uses RabbitMQ's @RabbitListener annotation to define methods that will be triggered when messages are received.
+ * Success events mark their order as paid, which also invalidates its cached entry.
+ * The success handler only reads the order id, status and transaction id of an event, and the failed handler
+ * reads the event straight into a CustomException, so no intermediate Map is built for either.
+ * Both read through the application's PayloadSerializer, so they share its mappers and cached readers.
+ * Events that carry a payment handle update the status of the corresponding asynchronous submission.
+ * On every delivery, the end-to-end latency from the originating HTTP request and the queue-residence time are recorded.
+ * With sharding enabled, the success handler consumes from every shard queue of the payment success queue.
+ * These listeners are not started when the batch consumer mode (PaymentBatchListener) is enabled.
  */
 
 @Component
@@ -25,55 +40,118 @@ public class PaymentListener {
 
     private final boolean isSimulated = false; // Simulate processing failure for demonstration purposes 
 
-    @RabbitListener(queues = "order.payment.success.queue", containerFactory = "successQueueFactory")
+    private final PaymentStatusService paymentStatusService;
+
+    private final PaymentMetrics paymentMetrics;
+
+    private final OrderRepository orderRepository;
+
+    private final PayloadSerializer payloadSerializer;
+
+    public PaymentListener(PaymentStatusService paymentStatusService, PaymentMetrics paymentMetrics,
+        OrderRepository orderRepository, PayloadSerializer payloadSerializer) {
+        this.paymentStatusService = paymentStatusService;
+        this.paymentMetrics = paymentMetrics;
+        this.orderRepository = orderRepository;
+        this.payloadSerializer = payloadSerializer;
+    }
+
+    @RabbitListener(queues = "#{@paymentSuccessListenerQueues}", containerFactory = "successQueueFactory", 
+        autoStartup = "#{!${spring.rabbitmq.order-payment.listener.batch-enabled:false}}")
     public void handleSuccess(Message message) throws Exception {
-        // Get the message body as a Map
-        Map<String, Object> messageMap = HelperUtil.convertToMap(message.getBody());
+        String queueName = message.getMessageProperties().getConsumerQueue();
+        long startNanos = System.nanoTime();
+        boolean success = false;
+
+        // Record how long the event took from the HTTP request, and how long it waited in the broker
+        MessageProperties messageProperties = message.getMessageProperties();
+        paymentMetrics.recordDelivery(queueName, messageProperties.getHeader(TraceHeaders.REQUEST_START_HEADER),
+            messageProperties.getHeader(TraceHeaders.PUBLISHED_AT_HEADER));
+
+        try {
+            // Read only the fields this handler needs from the message body
+            PaymentEventSummaryDTO event = payloadSerializer.readSummary(message.getBody(), messageProperties.getContentType());
         
-        // Get the retry count from the RetrySynchronizationManager
-        int retryCount = Optional.ofNullable(RetrySynchronizationManager.getContext())
-                             .map(RetryContext::getRetryCount)
-                             .orElse(0);
-
-        if (retryCount > 0) {
-            logger.info("Retrying message processing. Retry count: {} with message: {}", retryCount, messageMap.toString());
-        } else {
-            logger.info("Processing message for the first time. Message: {}", messageMap.toString());
-        }
+            // Get the retry count from the RetrySynchronizationManager
+            int retryCount = Optional.ofNullable(RetrySynchronizationManager.getContext())
+                                 .map(RetryContext::getRetryCount)
+                                 .orElse(0);
 
-        // Process the message
-        // For example, update the order status in the database or send a notification
+            if (retryCount > 0) {
+                paymentMetrics.recordRetry(queueName);
+                logger.info("Retrying message processing. Retry count: {} with message: {}", retryCount, event);
+            } else {
+                logger.info("Processing message for the first time. Message: {}", event);
+            }
 
-        // Simulate processing failure for demonstration purposes
-        if (isSimulated) {
-            logger.info("Simulating processing failure for demonstration purposes...");
-            throw new RuntimeException("Simulated processing failure...");
+            // Process the message
+            // For example, update the order status in the database or send a notification
+            String orderId = event.getOrderId();
+            if (orderId != null) {
+                orderRepository.markPaid(orderId);
+            }
+
+            String paymentHandle = message.getMessageProperties().getHeader(PublishContext.PAYMENT_HANDLE_HEADER);
+            if (paymentHandle != null) {
+                paymentStatusService.markSucceeded(paymentHandle, orderId, event.getTransactionId());
+            }
+
+            // Simulate processing failure for demonstration purposes
+            if (isSimulated) {
+                logger.info("Simulating processing failure for demonstration purposes...");
+                throw new RuntimeException("Simulated processing failure...");
+            }
+
+            success = true;
+        } finally {
+            paymentMetrics.recordConsume(queueName, success, startNanos);
         }
     }
 
-    @RabbitListener(queues = "order.payment.failed.queue", containerFactory = "failedQueueFactory")
+    @RabbitListener(queues = "order.payment.failed.queue", containerFactory = "failedQueueFactory", 
+        autoStartup = "#{!${spring.rabbitmq.order-payment.listener.batch-enabled:false}}")
     public void handleFailed(Message message) throws Exception {
-        // Get the message body as a Map
-        Map<String, Object> messageMap = HelperUtil.convertToMap(message.getBody());
+        String queueName = message.getMessageProperties().getConsumerQueue();
+        long startNanos = System.nanoTime();
+        boolean success = false;
+
+        // Record how long the event took from the HTTP request, and how long it waited in the broker
+        MessageProperties messageProperties = message.getMessageProperties();
+        paymentMetrics.recordDelivery(queueName, messageProperties.getHeader(TraceHeaders.REQUEST_START_HEADER),
+            messageProperties.getHeader(TraceHeaders.PUBLISHED_AT_HEADER));
+
+        try {
+            // Read the message body straight into the failure event
+            CustomException event = payloadSerializer.read(message.getBody(), messageProperties.getContentType(), CustomException.class);
         
-        // Get the retry count from the RetrySynchronizationManager
-        int retryCount = Optional.ofNullable(RetrySynchronizationManager.getContext())
-                             .map(RetryContext::getRetryCount)
-                             .orElse(0);
-
-        if (retryCount > 0) {
-            logger.info("Retrying message processing. Retry count: {} with message: {}", retryCount, messageMap.toString());
-        } else {
-            logger.info("Processing message for the first time. Message: {}", messageMap.toString());
-        }
+            // Get the retry count from the RetrySynchronizationManager
+            int retryCount = Optional.ofNullable(RetrySynchronizationManager.getContext())
+                                 .map(RetryContext::getRetryCount)
+                                 .orElse(0);
+
+            if (retryCount > 0) {
+                paymentMetrics.recordRetry(queueName);
+                logger.info("Retrying message processing. Retry count: {} with message: {}", retryCount, event);
+            } else {
+                logger.info("Processing message for the first time. Message: {}", event);
+            }
+
+            // Process the message
+            // For example, log the error or send an alert
+            String paymentHandle = message.getMessageProperties().getHeader(PublishContext.PAYMENT_HANDLE_HEADER);
+            if (paymentHandle != null) {
+                paymentStatusService.markFailed(paymentHandle, event.getMessage());
+            }
 
-        // Process the message
-        // For example, log the error or send an alert
+            // Simulate processing failure for demonstration purposes
+            if (isSimulated) {
+                logger.info("Simulating processing failure for demonstration purposes...");
+                throw new RuntimeException("Simulated processing failure...");
+            }
 
-        // Simulate processing failure for demonstration purposes
-        if (isSimulated) {
-            logger.info("Simulating processing failure for demonstration purposes...");
-            throw new RuntimeException("Simulated processing failure...");
+            success = true;
+        } finally {
+            paymentMetrics.recordConsume(queueName, success, startNanos);
         }
     }
 }
@@ -0,0 +1,94 @@
+package com.yoanesber.order_payment_rabbitmq.listener;
+
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.gateway.GatewayUnavailableException;
+import com.yoanesber.order_payment_rabbitmq.publisher.PublishContext;
+import com.yoanesber.order_payment_rabbitmq.service.OrderPaymentService;
+import com.yoanesber.order_payment_rabbitmq.service.PaymentStatusService;
+import com.yoanesber.order_payment_rabbitmq.tracing.TraceHeaders;
+
+/**
+ * PaymentRequestListener processes payment requests submitted through the asynchronous (202 Accepted) endpoint.
+ * Each request runs through the same OrderPaymentService flow as a synchronous request.
+ * The payment handle is put into the PublishContext, so the resulting success or failed event carries it
+ * and PaymentListener can update the payment status when it consumes that event.
+ * The request start time and trace id of the original HTTP request are carried over the same way,
+ * so end-to-end latency is measured from the submission, not from the moment the request was dequeued.
+ * Requests whose gateway is at its rate limit are parked on the gateway's holding queue. HoldingListenerConfig registers
+ * handleParkedRequest for every holding queue, with enough consumers to keep that gateway at its rate limit;
+ * each consumer waits for a gateway token before processing its request.
+ */
+
+@Component
+public class PaymentRequestListener {
+
+    private final OrderPaymentService orderPaymentService;
+
+    private final PaymentStatusService paymentStatusService;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public PaymentRequestListener(OrderPaymentService orderPaymentService, PaymentStatusService paymentStatusService) {
+        this.orderPaymentService = orderPaymentService;
+        this.paymentStatusService = paymentStatusService;
+    }
+
+    @RabbitListener(queues = "${spring.rabbitmq.order-payment.payment-request-queue-name:order.payment.requests.queue}", 
+        containerFactory = "requestQueueFactory")
+    public void handleRequest(CreateOrderPaymentRequestDTO orderPaymentDTO, 
+        @Header(name = PublishContext.PAYMENT_HANDLE_HEADER, required = false) String paymentHandle,
+        @Header(name = TraceHeaders.REQUEST_START_HEADER, required = false) Long requestStart,
+        @Header(name = TraceHeaders.TRACE_ID_HEADER, required = false) String traceId) {
+        logger.info("Processing payment request {} for order {}", paymentHandle, orderPaymentDTO.getOrderId());
+
+        this.process(orderPaymentDTO, paymentHandle, requestStart, traceId, orderPaymentService::processOrderPaymentRequest);
+    }
+
+    // Registered per holding queue by HoldingListenerConfig
+    public void handleParkedRequest(CreateOrderPaymentRequestDTO orderPaymentDTO, 
+        @Header(name = PublishContext.PAYMENT_HANDLE_HEADER, required = false) String paymentHandle,
+        @Header(name = TraceHeaders.REQUEST_START_HEADER, required = false) Long requestStart,
+        @Header(name = TraceHeaders.TRACE_ID_HEADER, required = false) String traceId,
+        @Header(name = PublishContext.PARKED_AT_HEADER, required = false) Long parkedAt) {
+        logger.info("Processing parked payment request {} for order {}", paymentHandle, orderPaymentDTO.getOrderId());
+
+        this.process(orderPaymentDTO, paymentHandle, requestStart, traceId, 
+            dto -> orderPaymentService.processParkedOrderPaymentRequest(dto, parkedAt));
+    }
+
+    private void process(CreateOrderPaymentRequestDTO orderPaymentDTO, String paymentHandle, Long requestStart, String traceId,
+        Consumer<CreateOrderPaymentRequestDTO> processor) {
+        if (paymentHandle != null) {
+            PublishContext.setHeader(PublishContext.PAYMENT_HANDLE_HEADER, paymentHandle);
+        }
+        if (requestStart != null) {
+            PublishContext.setHeader(TraceHeaders.REQUEST_START_HEADER, requestStart);
+        }
+        if (traceId != null) {
+            // Continue the trace with a new span for the events published while processing the request
+            PublishContext.setHeader(TraceHeaders.TRACE_ID_HEADER, traceId);
+            PublishContext.setHeader(TraceHeaders.TRACEPARENT_HEADER, TraceHeaders.newTraceparent(traceId));
+        }
+
+        try {
+            processor.accept(orderPaymentDTO);
+        } catch (IllegalArgumentException | GatewayUnavailableException e) {
+            // The failure was already published to the failed queue, whose listener updates the payment status
+            logger.warn("Payment request {} failed: {}", paymentHandle, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Unexpected error processing payment request {}: {}", paymentHandle, e.getMessage(), e);
+            if (paymentHandle != null) {
+                paymentStatusService.markFailed(paymentHandle, "An error occurred while processing order payment");
+            }
+        } finally {
+            PublishContext.clear();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.yoanesber.order_payment_rabbitmq.metrics;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * PaymentMetrics records the Micrometer meters of the payment flow, from publishing an event to consuming it.
+ * All timers publish a percentile histogram, so p50/p99 can be aggregated across instances in Prometheus.
+ * Tag values are limited to exchanges, routing keys, queues, payment methods and outcomes to keep cardinality bounded.
+ *
+ * payment.publish.latency      - time spent in MessagePublisher.publish, per exchange, routing key and publisher mode
+ * payment.publish.confirm      - time from send to publisher confirm, per result (ack/nack)
+ * payment.publish.returned     - messages returned by the broker, per reply code
+ * payment.publish.compression.ratio - compressed size / original size of messages over the compression threshold, per outcome (compressed/incompressible)
+ * payment.publish.compression.size  - body size of those messages before and after compression, per stage (original/compressed)
+ * payment.consume.latency      - time spent in a listener handler, per queue and outcome
+ * payment.consume.retries      - retried deliveries, per queue
+ * payment.consume.recovered    - messages handed to a recoverer, per queue and outcome (rejected/delayed)
+ * payment.gateway.latency      - payment gateway calls, per payment method and outcome
+ * payment.gateway.rejected     - gateway calls rejected or cut short, per payment method and reason (bulkhead-full/circuit-open/timeout/rate-limited)
+ * payment.gateway.circuit.state - circuit breaker state per payment method (0 closed, 1 open, 2 half-open)
+ * payment.ratelimit.tokens     - tokens available in a gateway's token bucket, per payment method
+ * payment.ratelimit.parked     - payment requests parked on a gateway's holding queue, per payment method
+ * payment.ratelimit.wait       - time a payment waited for a gateway token, per payment method and mode (sync/parked)
+ * payment.e2e.latency          - time from the HTTP request reaching the application to a listener consuming its event, per queue
+ * payment.queue.residence      - time from handing a message to the publisher to a listener consuming it, per queue
+ * payment.dlq.redrive          - messages handled by a dead letter queue re-drive, per queue and outcome (republished/parked/skipped/failed)
+ */
+
+@Component
+public class PaymentMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public PaymentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void recordPublish(String exchangeName, String routingKey, String mode, long startNanos) {
+        this.timer("payment.publish.latency", "Time spent publishing a message",
+            "exchange", exchangeName, "routingKey", routingKey, "mode", mode)
+            .record(Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    public void recordConfirm(boolean ack, long sentAtNanos) {
+        this.timer("payment.publish.confirm", "Time from sending a message to its publisher confirm",
+            "result", ack ? "ack" : "nack")
+            .record(Duration.ofNanos(System.nanoTime() - sentAtNanos));
+    }
+
+    public void recordReturn(int replyCode) {
+        Counter.builder("payment.publish.returned")
+            .description("Messages returned by the broker as unroutable")
+            .tag("replyCode", String.valueOf(replyCode))
+            .register(meterRegistry)
+            .increment();
+    }
+
+    public void recordCompression(int originalSize, int compressedSize, boolean compressed) {
+        DistributionSummary.builder("payment.publish.compression.ratio")
+            .description("Compressed size divided by original size of a message over the compression threshold")
+            .tag("outcome", compressed ? "compressed" : "incompressible")
+            .register(meterRegistry)
+            .record((double) compressedSize / originalSize);
+        this.sizeSummary("original").record(originalSize);
+        this.sizeSummary("compressed").record(compressed ? compressedSize : originalSize);
+    }
+
+    public void recordConsume(String queueName, boolean success, long startNanos) {
+        this.timer("payment.consume.latency", "Time spent processing a consumed message",
+            "queue", String.valueOf(queueName), "outcome", success ? "success" : "error")
+            .record(Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    public void recordRetry(String queueName) {
+        Counter.builder("payment.consume.retries")
+            .description("Retried message deliveries")
+            .tag("queue", String.valueOf(queueName))
+            .register(meterRegistry)
+            .increment();
+    }
+
+    public void recordRecovery(String queueName, String outcome) {
+        Counter.builder("payment.consume.recovered")
+            .description("Messages handed to a recoverer after processing failed")
+            .tag("queue", String.valueOf(queueName))
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    public void recordDelivery(String queueName, Number requestStart, Number publishedAt) {
+        long now = System.currentTimeMillis();
+        if (requestStart != null) {
+            this.timer("payment.e2e.latency", "Time from the HTTP request to consuming its event",
+                "queue", String.valueOf(queueName))
+                .record(Duration.ofMillis(Math.max(0, now - requestStart.longValue())));
+        }
+        if (publishedAt != null) {
+            this.timer("payment.queue.residence", "Time from publishing a message to consuming it",
+                "queue", String.valueOf(queueName))
+                .record(Duration.ofMillis(Math.max(0, now - publishedAt.longValue())));
+        }
+    }
+
+    public <T> T timeGateway(String paymentMethod, Supplier<T> call) {
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = result != null;
+            return result;
+        } finally {
+            this.timer("payment.gateway.latency", "Time spent in a payment gateway call",
+                "paymentMethod", paymentMethod, "outcome", success ? "success" : "error")
+                .record(Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+    }
+
+    public void recordGatewayRejection(String paymentMethod, String reason) {
+        Counter.builder("payment.gateway.rejected")
+            .description("Gateway calls rejected by the bulkhead, circuit breaker or rate limit, or timed out")
+            .tag("paymentMethod", paymentMethod)
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    public void registerGatewayCircuitState(String paymentMethod, Supplier<Number> state) {
+        Gauge.builder("payment.gateway.circuit.state", state)
+            .description("Circuit breaker state of a payment gateway (0 closed, 1 open, 2 half-open)")
+            .tag("paymentMethod", paymentMethod)
+            .register(meterRegistry);
+    }
+
+    public void registerRateLimitTokens(String paymentMethod, Supplier<Number> tokens) {
+        Gauge.builder("payment.ratelimit.tokens", tokens)
+            .description("Tokens available in the token bucket of a payment gateway")
+            .tag("paymentMethod", paymentMethod)
+            .register(meterRegistry);
+    }
+
+    public void registerRateLimitParked(String paymentMethod, Supplier<Number> depth) {
+        Gauge.builder("payment.ratelimit.parked", depth)
+            .description("Payment requests parked on the holding queue of a payment gateway")
+            .tag("paymentMethod", paymentMethod)
+            .register(meterRegistry);
+    }
+
+    public void recordRateLimitWait(String paymentMethod, String mode, long waitNanos) {
+        this.timer("payment.ratelimit.wait", "Time a payment waited for a gateway token",
+            "paymentMethod", paymentMethod, "mode", mode)
+            .record(Duration.ofNanos(Math.max(0, waitNanos)));
+    }
+
+    public void recordRedrive(String queueName, String outcome) {
+        Counter.builder("payment.dlq.redrive")
+            .description("Messages read from a dead letter queue by a re-drive job")
+            .tag("queue", String.valueOf(queueName))
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    private DistributionSummary sizeSummary(String stage) {
+        return DistributionSummary.builder("payment.publish.compression.size")
+            .description("Body size of a message over the compression threshold")
+            .baseUnit("bytes")
+            .tag("stage", stage)
+            .register(meterRegistry);
+    }
+
+    private Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+            .description(description)
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,30 @@
+package com.yoanesber.order_payment_rabbitmq.outbox;
+
+import java.time.Instant;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class OutboxEvent {
+    private Long id;
+    private String exchangeName; // Exchange the event is published to
+    private String routingKey; // Routing key the event is published with
+    private String contentType; // Content type of the converted payload, e.g., application/json
+    private Map<String, Object> headers; // Message headers, e.g., the payment handle
+    private byte[] payload; // Message body as produced by the message converter
+    private Instant createdAt; // Time the event was written to the outbox
+    private Instant sentAt; // Time the broker confirmed the event, null while unsent
+    private int attemptCount; // Number of failed relay attempts
+    private Instant nextAttemptAt; // Earliest time the relay publishes the event again
+    private Instant failedAt; // Time the relay gave up on the event, null while it is still retried
+    private String lastError; // Error of the last failed relay attempt
+}
@@ -0,0 +1,163 @@
+package com.yoanesber.order_payment_rabbitmq.outbox;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.yoanesber.order_payment_rabbitmq.publisher.ConfirmTrackingPublisher;
+import com.yoanesber.order_payment_rabbitmq.publisher.MessageReturnedException;
+import com.yoanesber.order_payment_rabbitmq.tracing.TraceHeaders;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * OutboxRelay drains the outbox to RabbitMQ in batches.
+ * Each batch is published through ConfirmTrackingPublisher, and the events the broker confirmed are then marked sent
+ * in one batch update. An event that could not be published stays in the outbox and is retried with exponential back-off,
+ * so an event written while the broker is down is delivered once it is reachable again. After max-attempts failed attempts,
+ * or at once if the broker returned it as unroutable, the event is marked failed and left in the outbox for inspection;
+ * failing events are postponed rather than re-read on every run, so they never block the events behind them.
+ * Only one batch is in flight at a time, and the relay never blocks the scheduler thread while waiting for confirms.
+ * Delivery is at-least-once: an event confirmed just before a crash may be published again after the restart.
+ */
+
+@Component
+public class OutboxRelay {
+
+    @Value("${order-payment.outbox.relay-batch-size:100}")
+    private int relayBatchSize;
+
+    @Value("${order-payment.outbox.retention:86400000}")
+    private long retention;
+
+    @Value("${order-payment.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${order-payment.outbox.retry-backoff:1000}")
+    private long retryBackoff;
+
+    @Value("${order-payment.outbox.max-retry-backoff:300000}")
+    private long maxRetryBackoff;
+
+    private final OutboxStore outboxStore;
+
+    private final ConfirmTrackingPublisher confirmTrackingPublisher;
+
+    // Set while a batch is waiting for its confirms
+    private final AtomicBoolean relaying = new AtomicBoolean();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public OutboxRelay(OutboxStore outboxStore, ConfirmTrackingPublisher confirmTrackingPublisher) {
+        this.outboxStore = outboxStore;
+        this.confirmTrackingPublisher = confirmTrackingPublisher;
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.isTrue(maxAttempts > 0, "Outbox max attempts must be greater than zero");
+        Assert.isTrue(retryBackoff > 0, "Outbox retry back-off must be greater than zero");
+        Assert.isTrue(maxRetryBackoff >= retryBackoff, "Outbox max retry back-off must not be less than the retry back-off");
+    }
+
+    /**
+     * Publishes the next batch of due events, unless the previous batch is still waiting for its confirms.
+     */
+    @Scheduled(fixedDelayString = "${order-payment.outbox.relay-interval:100}")
+    public void relay() {
+        if (!relaying.compareAndSet(false, true)) {
+            return;
+        }
+
+        List<OutboxEvent> events;
+        try {
+            events = outboxStore.findDue(relayBatchSize);
+        } catch (RuntimeException e) {
+            logger.error("Failed to read due events from the outbox. Error: {}", e.getMessage());
+            relaying.set(false);
+            return;
+        }
+
+        if (events.isEmpty()) {
+            relaying.set(false);
+            return;
+        }
+
+        ConcurrentLinkedQueue<Long> confirmedIds = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Map.Entry<OutboxEvent, Throwable>> failures = new ConcurrentLinkedQueue<>();
+        CompletableFuture<?>[] confirms = new CompletableFuture<?>[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            confirms[i] = confirmTrackingPublisher.publishAsync(event.getExchangeName(), event.getRoutingKey(), this.toMessage(event))
+                .handle((result, e) -> {
+                    if (e == null) {
+                        confirmedIds.add(event.getId());
+                    } else {
+                        failures.add(Map.entry(event, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e));
+                    }
+                    return null;
+                });
+        }
+
+        CompletableFuture.allOf(confirms).whenComplete((result, e) -> {
+            try {
+                outboxStore.markSent(List.copyOf(confirmedIds));
+                failures.forEach(failure -> this.recordFailure(failure.getKey(), failure.getValue()));
+                if (!failures.isEmpty()) {
+                    logger.warn("Relayed {} of {} outbox events, {} failed", confirmedIds.size(), events.size(), failures.size());
+                }
+            } catch (RuntimeException ex) {
+                logger.error("Failed to record the outcome of {} outbox events. Error: {}", events.size(), ex.getMessage());
+            } finally {
+                relaying.set(false);
+            }
+        });
+    }
+
+    private void recordFailure(OutboxEvent event, Throwable cause) {
+        int attemptCount = event.getAttemptCount() + 1;
+        if (cause instanceof MessageReturnedException || attemptCount >= maxAttempts) {
+            logger.error("Giving up on outbox event {} for exchange: {}, routingKey: {} after {} attempts. Last error: {}",
+                event.getId(), event.getExchangeName(), event.getRoutingKey(), attemptCount, cause.getMessage());
+            outboxStore.markFailed(event.getId(), attemptCount, cause.getMessage());
+            return;
+        }
+
+        // Exponential back-off: retry-backoff, then twice that, and so on, capped at max-retry-backoff
+        long backoff = Math.min(maxRetryBackoff, retryBackoff << Math.min(attemptCount - 1, 30));
+        outboxStore.markRetry(event.getId(), attemptCount, Instant.now().plusMillis(backoff), cause.getMessage());
+    }
+
+    /**
+     * Deletes sent events that are older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${order-payment.outbox.purge-interval:60000}")
+    public void purge() {
+        int deleted = outboxStore.deleteSentBefore(Instant.now().minusMillis(retention));
+        if (deleted > 0) {
+            logger.info("Purged {} sent outbox events", deleted);
+        }
+    }
+
+    private Message toMessage(OutboxEvent event) {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(event.getContentType());
+        messageProperties.getHeaders().putAll(event.getHeaders());
+
+        // Queue residence starts when the relay sends the event; the time spent in the outbox counts end-to-end only
+        messageProperties.setHeader(TraceHeaders.PUBLISHED_AT_HEADER, System.currentTimeMillis());
+        return new Message(event.getPayload(), messageProperties);
+    }
+}
@@ -0,0 +1,172 @@
+package com.yoanesber.order_payment_rabbitmq.outbox;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * OutboxStore keeps events that still have to be published to RabbitMQ in the outbox_event table.
+ * Writes join the surrounding transaction, so an event is stored atomically with the data it describes.
+ * OutboxRelay reads due events in insertion order and marks them sent once the broker has confirmed them.
+ * An event whose relay attempt fails is postponed to its next attempt time, and marked failed when the relay gives up,
+ * so a failing event never holds back the events behind it.
+ */
+
+@Repository
+public class OutboxStore {
+
+    private static final String INSERT_SQL = "INSERT INTO outbox_event (exchange_name, routing_key, content_type, headers, " +
+        "payload, created_at, attempt_count, next_attempt_at) VALUES (?, ?, ?, ?, ?, ?, 0, ?)";
+
+    private static final String SELECT_DUE_SQL = "SELECT id, exchange_name, routing_key, content_type, headers, payload, " +
+        "created_at, sent_at, attempt_count, next_attempt_at, failed_at, last_error FROM outbox_event " +
+        "WHERE sent_at IS NULL AND failed_at IS NULL AND next_attempt_at <= ? ORDER BY id LIMIT ?";
+
+    private static final String MARK_SENT_SQL = "UPDATE outbox_event SET sent_at = ? WHERE id = ?";
+
+    private static final String MARK_RETRY_SQL = "UPDATE outbox_event SET attempt_count = ?, next_attempt_at = ?, last_error = ? " +
+        "WHERE id = ?";
+
+    private static final String MARK_FAILED_SQL = "UPDATE outbox_event SET attempt_count = ?, failed_at = ?, last_error = ? " +
+        "WHERE id = ?";
+
+    // Longest error text kept in last_error
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private static final String DELETE_SENT_SQL = "DELETE FROM outbox_event WHERE sent_at < ?";
+
+    private static final TypeReference<Map<String, Object>> HEADERS_TYPE = new TypeReference<>() {};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    public OutboxStore(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes an already converted message to the outbox.
+     *
+     * @param exchangeName The name of the RabbitMQ exchange to publish to.
+     * @param routingKey   The routing key for the message.
+     * @param message      The AMQP message to be published.
+     */
+    public void save(String exchangeName, String routingKey, Message message) {
+        Assert.hasText(exchangeName, "Exchange name must not be empty");
+        Assert.hasText(routingKey, "Routing key must not be empty");
+        Assert.notNull(message, "Message must not be null");
+
+        MessageProperties messageProperties = message.getMessageProperties();
+        Timestamp now = Timestamp.from(Instant.now());
+        try {
+            jdbcTemplate.update(INSERT_SQL,
+                exchangeName,
+                routingKey,
+                messageProperties.getContentType(),
+                objectMapper.writeValueAsString(messageProperties.getHeaders()),
+                message.getBody(),
+                now,
+                now);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Message headers cannot be serialized: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns up to limit unsent events whose next attempt is due, oldest first. Failed events are skipped.
+     */
+    public List<OutboxEvent> findDue(int limit) {
+        return jdbcTemplate.query(SELECT_DUE_SQL, this::mapRow, Timestamp.from(Instant.now()), limit);
+    }
+
+    /**
+     * Marks the given events as sent.
+     */
+    public void markSent(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Timestamp sentAt = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(MARK_SENT_SQL, ids, ids.size(), (ps, id) -> {
+            ps.setTimestamp(1, sentAt);
+            ps.setLong(2, id);
+        });
+    }
+
+    /**
+     * Records a failed relay attempt of an event and postpones its next attempt.
+     *
+     * @param id            The id of the event.
+     * @param attemptCount  The number of failed attempts, including this one.
+     * @param nextAttemptAt The earliest time the event is relayed again.
+     * @param error         The error of this attempt.
+     */
+    public void markRetry(long id, int attemptCount, Instant nextAttemptAt, String error) {
+        jdbcTemplate.update(MARK_RETRY_SQL, attemptCount, Timestamp.from(nextAttemptAt), this.truncate(error), id);
+    }
+
+    /**
+     * Marks an event as failed, so the relay no longer picks it up. The row is kept for inspection.
+     *
+     * @param id           The id of the event.
+     * @param attemptCount The number of failed attempts, including this one.
+     * @param error        The error of the last attempt.
+     */
+    public void markFailed(long id, int attemptCount, String error) {
+        jdbcTemplate.update(MARK_FAILED_SQL, attemptCount, Timestamp.from(Instant.now()), this.truncate(error), id);
+    }
+
+    /**
+     * Deletes events that were sent before the given time.
+     *
+     * @return The number of deleted events.
+     */
+    public int deleteSentBefore(Instant before) {
+        return jdbcTemplate.update(DELETE_SENT_SQL, Timestamp.from(before));
+    }
+
+    private OutboxEvent mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Map<String, Object> headers;
+        try {
+            String json = rs.getString("headers");
+            headers = json != null ? objectMapper.readValue(json, HEADERS_TYPE) : Map.of();
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Invalid headers in outbox event " + rs.getLong("id"), e);
+        }
+
+        Timestamp sentAt = rs.getTimestamp("sent_at");
+        Timestamp failedAt = rs.getTimestamp("failed_at");
+        return new OutboxEvent(
+            rs.getLong("id"),
+            rs.getString("exchange_name"),
+            rs.getString("routing_key"),
+            rs.getString("content_type"),
+            headers,
+            rs.getBytes("payload"),
+            rs.getTimestamp("created_at").toInstant(),
+            sentAt != null ? sentAt.toInstant() : null,
+            rs.getInt("attempt_count"),
+            rs.getTimestamp("next_attempt_at").toInstant(),
+            failedAt != null ? failedAt.toInstant() : null,
+            rs.getString("last_error"));
+    }
+
+    private String truncate(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
@@ -0,0 +1,149 @@
+package com.yoanesber.order_payment_rabbitmq.publisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * BatchingMessagePublisher coalesces messages into fewer broker round-trips.
+ * Messages are grouped by exchange and routing key and flushed when the batch reaches its size or byte budget,
+ * or when the linger interval elapses. Each batch is sent with a single publisher confirm through
+ * ConfirmTrackingPublisher, and every caller's future completes once that confirm arrives.
+ * Batches use the format of RecordHeadersBatchingStrategy: the length-prefixed bodies of Spring AMQP's SimpleBatchingStrategy
+ * plus the headers of every message, so the listener containers de-batching with that strategy hand the original messages,
+ * each with its own payment handle, trace and publish-time headers, to the listener one by one.
+ */
+
+@Component
+public class BatchingMessagePublisher {
+
+    @Value("${spring.rabbitmq.order-payment.publisher.batch-size:100}")
+    private int batchSize;
+
+    @Value("${spring.rabbitmq.order-payment.publisher.batch-buffer-limit:65536}")
+    private int bufferLimit;
+
+    private final ConfirmTrackingPublisher confirmTrackingPublisher;
+
+    // Open batches keyed by exchange and routing key
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public BatchingMessagePublisher(ConfirmTrackingPublisher confirmTrackingPublisher) {
+        this.confirmTrackingPublisher = confirmTrackingPublisher;
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.isTrue(batchSize > 0, "Batch size must be greater than zero");
+        Assert.isTrue(bufferLimit > 0, "Batch buffer limit must be greater than zero");
+    }
+
+    /**
+     * Adds a message to the batch for its exchange and routing key.
+     *
+     * @param exchangeName The name of the RabbitMQ exchange to publish to.
+     * @param routingKey   The routing key for the message.
+     * @param message      The AMQP message to be published.
+     * @return A future that completes when the batch containing the message is confirmed.
+     */
+    public CompletableFuture<Void> publish(String exchangeName, String routingKey, Message message) {
+        Assert.hasText(exchangeName, "Exchange name must not be empty");
+        Assert.hasText(routingKey, "Routing key must not be empty");
+        Assert.notNull(message, "Message must not be null");
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        int messageSize = RecordHeadersBatchingStrategy.sizeOf(message);
+        List<Batch> readyBatches = new ArrayList<>(2);
+
+        batches.compute(exchangeName + "\u0000" + routingKey, (key, batch) -> {
+            // Close the open batch first if this message would push it over the byte budget
+            if (batch != null && batch.bufferSize + messageSize > bufferLimit) {
+                readyBatches.add(batch);
+                batch = null;
+            }
+
+            if (batch == null) {
+                batch = new Batch(exchangeName, routingKey);
+            }
+            batch.add(message, future, messageSize);
+
+            if (batch.messages.size() >= batchSize || batch.bufferSize >= bufferLimit) {
+                readyBatches.add(batch);
+                return null;
+            }
+            return batch;
+        });
+
+        // Send outside of compute() so the map bin is not locked during the broker call
+        readyBatches.forEach(this::send);
+        return future;
+    }
+
+    /**
+     * Flushes every open batch, so no message waits longer than the linger interval.
+     */
+    @Scheduled(fixedDelayString = "${spring.rabbitmq.order-payment.publisher.batch-linger:10}")
+    public void flush() {
+        for (String key : batches.keySet()) {
+            Batch batch = batches.remove(key);
+            if (batch != null) {
+                this.send(batch);
+            }
+        }
+    }
+
+    private void send(Batch batch) {
+        Message batchMessage;
+        try {
+            batchMessage = RecordHeadersBatchingStrategy.assemble(batch.messages);
+        } catch (RuntimeException e) {
+            logger.error("Failed to assemble batch of {} messages for exchange: {}, routingKey: {}. Error: {}",
+                batch.messages.size(), batch.exchangeName, batch.routingKey, e.getMessage());
+            batch.futures.forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+
+        confirmTrackingPublisher.publishAsync(batch.exchangeName, batch.routingKey, batchMessage)
+            .whenComplete((result, e) -> {
+                for (CompletableFuture<Void> future : batch.futures) {
+                    if (e == null) {
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+    }
+
+    private static final class Batch {
+        private final String exchangeName;
+        private final String routingKey;
+        private final List<Message> messages = new ArrayList<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private int bufferSize;
+
+        private Batch(String exchangeName, String routingKey) {
+            this.exchangeName = exchangeName;
+            this.routingKey = routingKey;
+        }
+
+        private void add(Message message, CompletableFuture<Void> future, int messageSize) {
+            messages.add(message);
+            futures.add(future);
+            bufferSize += messageSize;
+        }
+    }
+}
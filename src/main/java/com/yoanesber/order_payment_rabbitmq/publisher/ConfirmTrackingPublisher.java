@@ -0,0 +1,220 @@
+package com.yoanesber.order_payment_rabbitmq.publisher;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * ConfirmTrackingPublisher sends messages to RabbitMQ without blocking the caller on the broker round-trip.
+ * Every send carries a CorrelationData, and the returned CompletableFuture completes when the broker confirms it.
+ * The number of unconfirmed messages is bounded by an in-flight window. Messages that are nacked, fail to send,
+ * or are not confirmed within the confirm timeout are re-sent by a scheduled scanner until the attempts run out.
+ * A confirm that arrives after its timeout still completes the message, and a message completed that way is not re-sent.
+ * A confirm slower than the timeout plus one scan interval does lead to a re-send, though, so the broker can receive
+ * the message twice: delivery is at-least-once, and consumers must deduplicate, e.g. by the transaction id of the event.
+ * A message the broker returns as unroutable fails at once with a MessageReturnedException.
+ * This requires spring.rabbitmq.publisher-confirm-type=correlated.
+ */
+
+@Component
+public class ConfirmTrackingPublisher {
+
+    @Value("${spring.rabbitmq.order-payment.publisher.max-in-flight:1000}")
+    private int maxInFlight;
+
+    @Value("${spring.rabbitmq.order-payment.publisher.in-flight-acquire-timeout:100}")
+    private long inFlightAcquireTimeout;
+
+    @Value("${spring.rabbitmq.order-payment.publisher.confirm-timeout:5000}")
+    private long confirmTimeout;
+
+    @Value("${spring.rabbitmq.order-payment.publisher.max-attempts:3}")
+    private int maxAttempts;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    // Unconfirmed sends keyed by the id of the CorrelationData they were sent with
+    private final Map<String, PendingConfirm> pendingConfirms = new ConcurrentHashMap<>();
+
+    // Sends that failed or were nacked, waiting for the next scan to be re-sent
+    private final Queue<PendingConfirm> deferredResends = new ConcurrentLinkedQueue<>();
+
+    private Semaphore inFlightWindow;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public ConfirmTrackingPublisher(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.isTrue(maxInFlight > 0, "Max in-flight messages must be greater than zero");
+        Assert.isTrue(maxAttempts > 0, "Max attempts must be greater than zero");
+        this.inFlightWindow = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Publishes an already converted message and returns a future that completes once the broker confirms it.
+     * If the in-flight window stays full for longer than the acquire timeout, the returned future fails immediately.
+     *
+     * @param exchangeName The name of the RabbitMQ exchange to publish to.
+     * @param routingKey   The routing key for the message.
+     * @param message      The AMQP message to be published.
+     * @return A future that completes when the message is confirmed, or exceptionally when all attempts fail.
+     */
+    public CompletableFuture<Void> publishAsync(String exchangeName, String routingKey, Message message) {
+        Assert.hasText(exchangeName, "Exchange name must not be empty");
+        Assert.hasText(routingKey, "Routing key must not be empty");
+        Assert.notNull(message, "Message must not be null");
+
+        try {
+            if (!inFlightWindow.tryAcquire(inFlightAcquireTimeout, TimeUnit.MILLISECONDS)) {
+                return CompletableFuture.failedFuture(new AmqpException(
+                    "In-flight window of " + maxInFlight + " unconfirmed messages is full"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new AmqpException("Interrupted while waiting for the in-flight window", e));
+        }
+
+        PendingConfirm pending = new PendingConfirm(exchangeName, routingKey, message);
+        this.send(pending);
+        return pending.future;
+    }
+
+    /**
+     * Returns the number of messages that are sent but not yet confirmed or failed.
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlightWindow.availablePermits();
+    }
+
+    /**
+     * Re-sends messages that failed on the previous attempt and messages whose confirm did not arrive in time.
+     */
+    @Scheduled(fixedDelayString = "${spring.rabbitmq.order-payment.publisher.confirm-scan-interval:1000}")
+    public void resendUnconfirmed() {
+        PendingConfirm deferred;
+        int deferredCount = deferredResends.size();
+        while (deferredCount-- > 0 && (deferred = deferredResends.poll()) != null) {
+            // A late confirm of the previous attempt may have completed the message in the meantime
+            if (!deferred.future.isDone()) {
+                this.send(deferred);
+            }
+        }
+
+        long now = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(confirmTimeout);
+        pendingConfirms.forEach((correlationId, pending) -> {
+            if (now - pending.sentAt > timeoutNanos && pendingConfirms.remove(correlationId, pending)) {
+                logger.warn("No confirm received within {} ms for correlation id: {}, exchange: {}, routingKey: {}",
+                    confirmTimeout, correlationId, pending.exchangeName, pending.routingKey);
+                this.retryOrFail(pending, new AmqpException("Publisher confirm timed out after " + confirmTimeout + " ms"));
+            }
+        });
+    }
+
+    private void send(PendingConfirm pending) {
+        CorrelationData correlationData = new TimedCorrelationData(UUID.randomUUID().toString());
+        pending.attempts++;
+        pending.sentAt = System.nanoTime();
+        pendingConfirms.put(correlationData.getId(), pending);
+        correlationData.getFuture().whenComplete((confirm, ex) -> {
+            ReturnedMessage returned = correlationData.getReturned();
+
+            // A missing entry means the scanner already timed this attempt out; a late ack still means the broker has the message
+            if (!pendingConfirms.remove(correlationData.getId(), pending)) {
+                if (ex == null && confirm.isAck() && returned == null && this.complete(pending)) {
+                    logger.info("Late confirm received for correlation id: {}, exchange: {}, routingKey: {}",
+                        correlationData.getId(), pending.exchangeName, pending.routingKey);
+                }
+                return;
+            }
+
+            if (ex == null && confirm.isAck() && returned == null) {
+                this.complete(pending);
+            } else if (returned != null) {
+                // An unroutable message will not become routable by sending it again
+                this.fail(pending, new MessageReturnedException("Message returned by broker, replyCode: " + returned.getReplyCode() +
+                    ", replyText: " + returned.getReplyText()));
+            } else {
+                this.retryOrFail(pending, new AmqpException("Message not acknowledged by broker: " +
+                    (ex != null ? ex.getMessage() : confirm.getReason())));
+            }
+        });
+
+        try {
+            rabbitTemplate.send(pending.exchangeName, pending.routingKey, pending.message, correlationData);
+        } catch (AmqpException e) {
+            if (pendingConfirms.remove(correlationData.getId(), pending)) {
+                this.retryOrFail(pending, e);
+            }
+        }
+    }
+
+    private void retryOrFail(PendingConfirm pending, AmqpException cause) {
+        if (pending.future.isDone()) {
+            return;
+        }
+        if (pending.attempts >= maxAttempts) {
+            this.fail(pending, cause);
+            return;
+        }
+
+        logger.warn("Attempt {} to publish message to exchange: {}, routingKey: {} failed, retrying on next scan. Error: {}",
+            pending.attempts, pending.exchangeName, pending.routingKey, cause.getMessage());
+        deferredResends.add(pending);
+    }
+
+    private boolean complete(PendingConfirm pending) {
+        // Only the first outcome of a message counts, e.g., a late confirm racing the confirm of its re-send
+        if (!pending.future.complete(null)) {
+            return false;
+        }
+        inFlightWindow.release();
+        return true;
+    }
+
+    private void fail(PendingConfirm pending, AmqpException cause) {
+        if (!pending.future.completeExceptionally(cause)) {
+            return;
+        }
+        logger.error("All {} attempts failed to publish message to exchange: {}, routingKey: {}. Last error: {}",
+            pending.attempts, pending.exchangeName, pending.routingKey, cause.getMessage());
+        inFlightWindow.release();
+    }
+
+    private static final class PendingConfirm {
+        private final String exchangeName;
+        private final String routingKey;
+        private final Message message;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private volatile int attempts;
+        private volatile long sentAt;
+
+        private PendingConfirm(String exchangeName, String routingKey, Message message) {
+            this.exchangeName = exchangeName;
+            this.routingKey = routingKey;
+            this.message = message;
+        }
+    }
+}
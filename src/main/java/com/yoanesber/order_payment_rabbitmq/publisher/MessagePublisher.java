@@ -1,31 +1,88 @@
 package com.yoanesber.order_payment_rabbitmq.publisher;
 
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.AmqpException;  
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+import com.yoanesber.order_payment_rabbitmq.outbox.OutboxStore;
+import com.yoanesber.order_payment_rabbitmq.tracing.TraceHeaders;
+
+import jakarta.annotation.PostConstruct;
+
 /**
  * MessagePublisher is a component that handles the publishing of messages to RabbitMQ exchanges.
  * It uses RabbitTemplate for sending messages and RetryTemplate for retrying message publishing in case of failures.
  * The class provides a method to publish messages with a specified exchange name, routing key, and message content.
+ * In ASYNC mode the publish is handed to ConfirmTrackingPublisher, so the caller never waits on the broker.
+ * In BATCH mode messages are additionally coalesced by BatchingMessagePublisher into fewer broker round-trips.
+ * In OUTBOX mode messages are only written to the outbox, and OutboxRelay publishes them to RabbitMQ.
+ * In every mode, a message that finally fails to publish is written to the outbox instead of being dropped,
+ * unless the broker returned it as unroutable.
+ * Outside OUTBOX mode, a message published inside a transaction is only sent once that transaction has committed,
+ * so the broker call and its retries never hold the transaction open, and a rolled-back transaction publishes nothing.
+ * Headers held in the PublishContext of the calling thread are stamped onto every published message,
+ * together with the publish time, so listeners can measure queue-residence and end-to-end latency.
+ * When sharding is enabled, messages published with a shard key are routed to <routingKey>.shard.<n>,
+ * where n is the hash of the key modulo the shard count, so all messages of one key land on the same shard queue.
  */
 
 @Component
 public class MessagePublisher {
+
+    @Value("${spring.rabbitmq.order-payment.publisher.mode:blocking}")
+    private String mode;
+
+    @Value("${spring.rabbitmq.order-payment.sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    @Value("${spring.rabbitmq.order-payment.sharding.shard-count:4}")
+    private int shardCount;
     
     private final RabbitTemplate rabbitTemplate;
 
     private final RetryTemplate retryTemplate;
 
+    private final ConfirmTrackingPublisher confirmTrackingPublisher;
+
+    private final BatchingMessagePublisher batchingMessagePublisher;
+
+    private final OutboxStore outboxStore;
+
+    private final PaymentMetrics paymentMetrics;
+
+    private PublisherMode publisherMode;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    public MessagePublisher(RabbitTemplate rabbitTemplate, RetryTemplate retryTemplate) {
+    public MessagePublisher(RabbitTemplate rabbitTemplate, RetryTemplate retryTemplate, 
+        ConfirmTrackingPublisher confirmTrackingPublisher, BatchingMessagePublisher batchingMessagePublisher,
+        OutboxStore outboxStore, PaymentMetrics paymentMetrics) {
         this.rabbitTemplate = rabbitTemplate;
         this.retryTemplate = retryTemplate;
+        this.confirmTrackingPublisher = confirmTrackingPublisher;
+        this.batchingMessagePublisher = batchingMessagePublisher;
+        this.outboxStore = outboxStore;
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.publisherMode = PublisherMode.valueOf(mode.toUpperCase());
+        Assert.isTrue(!shardingEnabled || shardCount > 0, "Shard count must be greater than zero");
+        logger.info("Message publisher running in {} mode", publisherMode);
     }
 
     /**
@@ -35,23 +92,90 @@ public class MessagePublisher {
      * @param exchangeName The name of the RabbitMQ exchange to publish to.
      * @param routingKey The routing key for the message.
      * @param message    The message to be published.
+     * @return A future that completes when the message is published; in ASYNC and BATCH mode this is when the broker
+     *         confirms it, and it completes exceptionally when all attempts fail. Inside a transaction the message is
+     *         only published after the commit, and the future completes exceptionally if the transaction rolls back.
      */
-    public void publish(String exchangeName, String routingKey, Object message) {
+    public CompletableFuture<Void> publish(String exchangeName, String routingKey, Object message) {
         Assert.hasText(exchangeName, "Exchange name must not be empty");
         Assert.hasText(routingKey, "Routing key must not be empty");
         Assert.notNull(message, "Message must not be null");
 
+        if (publisherMode != PublisherMode.OUTBOX && TransactionSynchronizationManager.isSynchronizationActive()) {
+            return this.publishAfterCommit(exchangeName, routingKey, message);
+        }
+
+        return this.timedPublish(exchangeName, routingKey, message);
+    }
+
+    private CompletableFuture<Void> publishAfterCommit(String exchangeName, String routingKey, Object message) {
+        CompletableFuture<Void> published = new CompletableFuture<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // Runs on the committing thread, so the caller's PublishContext is still in place
+                try {
+                    timedPublish(exchangeName, routingKey, message).whenComplete((result, e) -> {
+                        if (e != null) {
+                            published.completeExceptionally(e);
+                        } else {
+                            published.complete(null);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    // The data is already committed, so the failure is reported through the future, not to the committer
+                    published.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    published.completeExceptionally(new IllegalStateException("Transaction rolled back, message not published"));
+                }
+            }
+        });
+        return published;
+    }
+
+    private CompletableFuture<Void> timedPublish(String exchangeName, String routingKey, Object message) {
+        long startNanos = System.nanoTime();
+        try {
+            return this.doPublish(exchangeName, routingKey, message);
+        } finally {
+            paymentMetrics.recordPublish(exchangeName, routingKey, publisherMode.name().toLowerCase(), startNanos);
+        }
+    }
+
+    private CompletableFuture<Void> doPublish(String exchangeName, String routingKey, Object message) {
+        if (publisherMode == PublisherMode.OUTBOX) {
+            // A local write only; joins the caller's transaction, so the event commits together with its data
+            outboxStore.save(exchangeName, routingKey, this.toMessage(message));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (publisherMode == PublisherMode.ASYNC || publisherMode == PublisherMode.BATCH) {
+            // Do not wait for the confirm; failures are retried and finally logged by the confirm tracker
+            return this.publishAsync(exchangeName, routingKey, message);
+        }
+
+        Map<String, Object> headers = PublishContext.getHeaders();
+
         try {
             retryTemplate.execute(context -> {
                 logger.info("Attempt {} to publish message: {}", context.getRetryCount() + 1, message);
-                rabbitTemplate.convertAndSend(exchangeName, routingKey, message);
+                rabbitTemplate.convertAndSend(exchangeName, routingKey, message, amqpMessage -> {
+                    amqpMessage.getMessageProperties().getHeaders().putAll(headers);
+                    amqpMessage.getMessageProperties().setHeader(TraceHeaders.PUBLISHED_AT_HEADER, System.currentTimeMillis());
+                    return amqpMessage;
+                }, new TimedCorrelationData(UUID.randomUUID().toString()));
                 return null;
             }, context -> {
                 logger.error("All retry attempts failed to publish message: {}. Last error: {}",
                     message, context.getLastThrowable().getMessage());
 
-                // Optional: persist message to DB/Redis for future retry or notify admin
-                // This could be a custom implementation to handle the failure case
+                // Persist the message to the outbox, so OutboxRelay publishes it once the broker is reachable again
+                this.saveToOutbox(exchangeName, routingKey, this.toMessage(message));
                 
                 return null;
             });
@@ -62,5 +186,82 @@ public class MessagePublisher {
             logger.error("Failed to publish message to exchange: {}, routingKey: {}, message: {}. Error: {}", exchangeName, routingKey, message, e.getMessage(), e);
             throw new RuntimeException("Failed to publish message", e);
         } 
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Publishes a message to the shard of the given routing key that the shard key hashes to.
+     * Without sharding, or without a shard key, the message is published with the routing key as is.
+     *
+     * @param exchangeName The name of the RabbitMQ exchange to publish to.
+     * @param routingKey The base routing key for the message.
+     * @param shardKey   The key that selects the shard, e.g. the orderId.
+     * @param message    The message to be published.
+     * @return A future that completes when the message is published, as for publish without a shard key.
+     */
+    public CompletableFuture<Void> publish(String exchangeName, String routingKey, String shardKey, Object message) {
+        if (!shardingEnabled || shardKey == null) {
+            return this.publish(exchangeName, routingKey, message);
+        }
+
+        // String.hashCode is specified by the JLS, so every instance maps a key to the same shard
+        int shard = Math.floorMod(shardKey.hashCode(), shardCount);
+        return this.publish(exchangeName, routingKey + ".shard." + shard, message);
+    }
+
+    /**
+     * Publishes a message to the specified RabbitMQ exchange without blocking on the broker.
+     * The returned future completes when the broker confirms the message, or the batch carrying it in BATCH mode.
+     *
+     * @param exchangeName The name of the RabbitMQ exchange to publish to.
+     * @param routingKey The routing key for the message.
+     * @param message    The message to be published.
+     * @return A future that completes when the message is confirmed, or exceptionally when all attempts fail.
+     */
+    public CompletableFuture<Void> publishAsync(String exchangeName, String routingKey, Object message) {
+        Assert.hasText(exchangeName, "Exchange name must not be empty");
+        Assert.hasText(routingKey, "Routing key must not be empty");
+        Assert.notNull(message, "Message must not be null");
+
+        // Convert once up front, so that re-sends after a nack or confirm timeout reuse the same message
+        Message amqpMessage = this.toMessage(message);
+
+        CompletableFuture<Void> confirmed = publisherMode == PublisherMode.BATCH
+            ? batchingMessagePublisher.publish(exchangeName, routingKey, amqpMessage)
+            : confirmTrackingPublisher.publishAsync(exchangeName, routingKey, amqpMessage);
+
+        return confirmed.whenComplete((result, e) -> {
+            if (e != null) {
+                logger.error("Failed to publish message to exchange: {}, routingKey: {}, message: {}. Error: {}", 
+                    exchangeName, routingKey, message, e.getMessage());
+
+                // An unroutable message stays unroutable, so the outbox would only retry it forever
+                if (e instanceof MessageReturnedException || e.getCause() instanceof MessageReturnedException) {
+                    return;
+                }
+
+                // Persist the message to the outbox, so OutboxRelay publishes it once the broker is reachable again
+                this.saveToOutbox(exchangeName, routingKey, amqpMessage);
+            }
+        });
+    }
+
+    private Message toMessage(Object message) {
+        // Convert with the template's converter and stamp the headers of the calling thread's PublishContext
+        Message amqpMessage = rabbitTemplate.getMessageConverter().toMessage(message, new MessageProperties());
+        amqpMessage.getMessageProperties().getHeaders().putAll(PublishContext.getHeaders());
+        amqpMessage.getMessageProperties().setHeader(TraceHeaders.PUBLISHED_AT_HEADER, System.currentTimeMillis());
+        return amqpMessage;
+    }
+
+    private void saveToOutbox(String exchangeName, String routingKey, Message message) {
+        try {
+            outboxStore.save(exchangeName, routingKey, message);
+            logger.info("Message saved to the outbox for exchange: {}, routingKey: {}", exchangeName, routingKey);
+        } catch (RuntimeException e) {
+            logger.error("Failed to save message to the outbox for exchange: {}, routingKey: {}. Error: {}", 
+                exchangeName, routingKey, e.getMessage(), e);
+        }
     }
 }
@@ -0,0 +1,15 @@
+package com.yoanesber.order_payment_rabbitmq.publisher;
+
+import org.springframework.amqp.AmqpException;
+
+/**
+ * MessageReturnedException fails the publish of a message that the broker returned as unroutable.
+ * Sending such a message again does not make it routable, so it is neither re-sent nor saved to the outbox.
+ */
+
+public class MessageReturnedException extends AmqpException {
+
+    public MessageReturnedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,77 @@
+package com.yoanesber.order_payment_rabbitmq.publisher;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * PublishContext holds AMQP headers for the current thread.
+ * MessagePublisher stamps these headers onto every message published from that thread,
+ * so values such as the payment handle of an asynchronous submission follow the payment
+ * through every success or failed event without being threaded through each method call.
+ */
+
+public final class PublishContext {
+
+    // Header carrying the handle returned to the client by the asynchronous submission endpoint
+    public static final String PAYMENT_HANDLE_HEADER = "x-payment-handle";
+
+    // Header carrying the epoch milliseconds at which a rate-limited payment request was parked on its holding queue
+    public static final String PARKED_AT_HEADER = "x-parked-at";
+
+    private static final ThreadLocal<Map<String, Object>> HEADERS = new ThreadLocal<>();
+
+    private PublishContext() {
+    }
+
+    public static void setHeader(String name, Object value) {
+        Map<String, Object> headers = HEADERS.get();
+        if (headers == null) {
+            headers = new HashMap<>();
+            HEADERS.set(headers);
+        }
+        headers.put(name, value);
+    }
+
+    public static void removeHeader(String name) {
+        Map<String, Object> headers = HEADERS.get();
+        if (headers != null) {
+            headers.remove(name);
+        }
+    }
+
+    public static Map<String, Object> getHeaders() {
+        Map<String, Object> headers = HEADERS.get();
+        return headers == null ? Collections.emptyMap() : Collections.unmodifiableMap(headers);
+    }
+
+    public static void clear() {
+        HEADERS.remove();
+    }
+
+    /**
+     * Wraps a task so that it runs with a copy of the current thread's headers, e.g., on a gateway executor thread.
+     */
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        Map<String, Object> headers = HEADERS.get();
+        if (headers == null || headers.isEmpty()) {
+            return task;
+        }
+
+        Map<String, Object> snapshot = new HashMap<>(headers);
+        return () -> {
+            Map<String, Object> previous = HEADERS.get();
+            HEADERS.set(new HashMap<>(snapshot));
+            try {
+                return task.get();
+            } finally {
+                if (previous == null) {
+                    HEADERS.remove();
+                } else {
+                    HEADERS.set(previous);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package com.yoanesber.order_payment_rabbitmq.publisher;
+
+/**
+ * PublisherMode selects how MessagePublisher hands messages over to RabbitMQ.
+ * BLOCKING retries the send on the caller thread with the RetryTemplate,
+ * while ASYNC returns immediately and tracks the publisher confirm in the background.
+ * BATCH is non-blocking as well, but coalesces messages per exchange and routing key before sending.
+ * OUTBOX only writes the message to the local outbox, within the caller's transaction; OutboxRelay publishes it later.
+ */
+
+public enum PublisherMode {
+    BLOCKING,
+    ASYNC,
+    BATCH,
+    OUTBOX
+}
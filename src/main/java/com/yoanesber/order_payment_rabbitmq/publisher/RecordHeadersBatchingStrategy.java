@@ -0,0 +1,157 @@
+package com.yoanesber.order_payment_rabbitmq.publisher;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.MessagePropertiesBuilder;
+import org.springframework.amqp.rabbit.batch.BatchingStrategy;
+import org.springframework.amqp.rabbit.batch.MessageBatch;
+import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.beans.BeanUtils;
+
+/**
+ * RecordHeadersBatchingStrategy defines the batch format of BatchingMessagePublisher.
+ * The body uses the length-prefixed format of Spring AMQP's SimpleBatchingStrategy, and the x-batch-headers header
+ * lists the headers of every message in the order of their bodies. De-batching gives each message its own headers back,
+ * so per-request headers such as the payment handle, trace id and publish time survive batching.
+ * The listener container factories de-batch with this strategy (ListenerFactoryConfig). A batch without x-batch-headers
+ * is split like a SimpleBatchingStrategy batch, with every message getting the batch's headers.
+ * Batches are assembled by BatchingMessagePublisher, so the producer-side methods of BatchingStrategy are not supported.
+ */
+
+public class RecordHeadersBatchingStrategy implements BatchingStrategy {
+
+    // Header listing the headers of each message of a batch, in the order of the message bodies
+    public static final String RECORD_HEADERS_HEADER = "x-batch-headers";
+
+    /**
+     * Assembles messages sent to the same exchange and routing key into one batch message.
+     * The batch carries the properties of the first message; a single message is returned as is.
+     *
+     * @param messages The messages to be batched, in publish order.
+     * @return The batch message.
+     */
+    public static Message assemble(List<Message> messages) {
+        if (messages.size() == 1) {
+            return messages.get(0);
+        }
+
+        int bodySize = 0;
+        for (Message message : messages) {
+            bodySize += Integer.BYTES + message.getBody().length;
+        }
+
+        // Each message body is prefixed with its 4-byte length, and its headers are listed in the same order
+        byte[] body = new byte[bodySize];
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        List<Map<String, Object>> recordHeaders = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            buffer.putInt(message.getBody().length);
+            buffer.put(message.getBody());
+            recordHeaders.add(headersOf(message.getMessageProperties()));
+        }
+
+        // Copy the properties, so a message that later falls back to the outbox does not carry the batch headers
+        MessageProperties messageProperties = MessagePropertiesBuilder
+            .fromClonedProperties(messages.get(0).getMessageProperties()).build();
+        messageProperties.setHeader(MessageProperties.SPRING_BATCH_FORMAT, MessageProperties.BATCH_FORMAT_LENGTH_HEADER4);
+        messageProperties.setHeader(AmqpHeaders.BATCH_SIZE, messages.size());
+        messageProperties.setHeader(RECORD_HEADERS_HEADER, recordHeaders);
+        return new Message(body, messageProperties);
+    }
+
+    /**
+     * Returns the number of bytes a message adds to a batch: its body, its length prefix and roughly its headers,
+     * which travel in the batch's header frame.
+     */
+    public static int sizeOf(Message message) {
+        int size = Integer.BYTES + message.getBody().length;
+        for (Map.Entry<String, Object> header : message.getMessageProperties().getHeaders().entrySet()) {
+            if (header.getValue() != null) {
+                size += header.getKey().length() + String.valueOf(header.getValue()).length();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public MessageBatch addToBatch(String exchange, String routingKey, Message message) {
+        throw new UnsupportedOperationException("Batches are assembled by BatchingMessagePublisher");
+    }
+
+    @Override
+    public Date nextRelease() {
+        return null;
+    }
+
+    @Override
+    public Collection<MessageBatch> releaseBatches() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean canDebatch(MessageProperties properties) {
+        return MessageProperties.BATCH_FORMAT_LENGTH_HEADER4.equals(properties.getHeaders().get(MessageProperties.SPRING_BATCH_FORMAT));
+    }
+
+    @Override
+    public void deBatch(Message message, Consumer<Message> fragmentConsumer) {
+        MessageProperties batchProperties = message.getMessageProperties();
+        List<?> recordHeaders = batchProperties.getHeaders().get(RECORD_HEADERS_HEADER) instanceof List<?> list ? list : null;
+
+        // Headers of a batch without per-message headers, as a SimpleBatchingStrategy listener would see them
+        Map<String, Object> batchHeaders = new HashMap<>(batchProperties.getHeaders());
+        batchHeaders.remove(MessageProperties.SPRING_BATCH_FORMAT);
+        batchHeaders.remove(AmqpHeaders.BATCH_SIZE);
+        batchHeaders.remove(RECORD_HEADERS_HEADER);
+
+        ByteBuffer buffer = ByteBuffer.wrap(message.getBody());
+        int index = 0;
+        while (buffer.hasRemaining()) {
+            int length = buffer.remaining() >= Integer.BYTES ? buffer.getInt() : -1;
+            if (length < 0 || length > buffer.remaining()) {
+                throw new ListenerExecutionFailedException("Bad batched message received",
+                    new MessageConversionException("Insufficient batch data at offset " + buffer.position()), message);
+            }
+            byte[] body = new byte[length];
+            buffer.get(body);
+
+            // Every fragment gets its own properties, including the delivery details the container set on the batch,
+            // and then its own headers in place of the batch's
+            MessageProperties fragmentProperties = new MessageProperties();
+            BeanUtils.copyProperties(batchProperties, fragmentProperties);
+            fragmentProperties.getHeaders().clear();
+            if (recordHeaders != null && index < recordHeaders.size() && recordHeaders.get(index) instanceof Map<?, ?> headers) {
+                headers.forEach((name, value) -> fragmentProperties.setHeader(String.valueOf(name), value));
+            } else {
+                fragmentProperties.getHeaders().putAll(batchHeaders);
+            }
+            fragmentProperties.setContentLength(length);
+            fragmentProperties.setLastInBatch(!buffer.hasRemaining());
+
+            fragmentConsumer.accept(new Message(body, fragmentProperties));
+            index++;
+        }
+    }
+
+    private static Map<String, Object> headersOf(MessageProperties messageProperties) {
+        // AMQP header tables cannot hold null values
+        Map<String, Object> headers = new HashMap<>();
+        messageProperties.getHeaders().forEach((name, value) -> {
+            if (value != null) {
+                headers.put(name, value);
+            }
+        });
+        return headers;
+    }
+}
@@ -0,0 +1,57 @@
+package com.yoanesber.order_payment_rabbitmq.publisher;
+
+import java.util.List;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.support.postprocessor.GZipPostProcessor;
+
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+
+/**
+ * ThresholdCompressingPostProcessor gzips outgoing messages whose body is at least the threshold size,
+ * typically producer-side batches and large events. Smaller messages are sent as they are,
+ * since compressing them costs more CPU than it saves on the wire.
+ * A compressed message carries "gzip" in front of its content encoding (e.g. gzip:UTF-8), which is how the
+ * listener containers' DelegatingDecompressingPostProcessor recognises it; a message that does not get smaller is sent uncompressed.
+ * The message properties are copied before they are changed, so a message re-sent by ConfirmTrackingPublisher
+ * or the outbox relay is compressed from its original form again.
+ * A message that is already compressed, e.g. one re-driven from a dead letter queue as it was received, is sent as it is.
+ */
+
+public class ThresholdCompressingPostProcessor implements MessagePostProcessor {
+
+    // Encodings recognised by DelegatingDecompressingPostProcessor
+    private static final List<String> COMPRESSED_ENCODINGS = List.of("gzip", "zip", "deflate");
+
+    private final GZipPostProcessor compressor = new GZipPostProcessor();
+
+    private final int threshold;
+
+    private final PaymentMetrics paymentMetrics;
+
+    public ThresholdCompressingPostProcessor(int threshold, int level, PaymentMetrics paymentMetrics) {
+        this.threshold = threshold;
+        this.paymentMetrics = paymentMetrics;
+        this.compressor.setLevel(level);
+        this.compressor.setCopyProperties(true);
+    }
+
+    @Override
+    public Message postProcessMessage(Message message) {
+        String contentEncoding = message.getMessageProperties().getContentEncoding();
+        if (contentEncoding != null && COMPRESSED_ENCODINGS.stream().anyMatch(contentEncoding::startsWith)) {
+            return message;
+        }
+
+        int originalSize = message.getBody().length;
+        if (originalSize < threshold) {
+            return message;
+        }
+
+        Message compressed = compressor.postProcessMessage(message);
+        int compressedSize = compressed.getBody().length;
+        boolean smaller = compressedSize < originalSize;
+        paymentMetrics.recordCompression(originalSize, compressedSize, smaller);
+        return smaller ? compressed : message;
+    }
+}
@@ -0,0 +1,21 @@
+package com.yoanesber.order_payment_rabbitmq.publisher;
+
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+
+/**
+ * TimedCorrelationData is a CorrelationData that remembers when its message was sent,
+ * so the confirm callback can record the confirm latency of every correlated publish.
+ */
+
+public class TimedCorrelationData extends CorrelationData {
+
+    private final long sentAtNanos = System.nanoTime();
+
+    public TimedCorrelationData(String id) {
+        super(id);
+    }
+
+    public long getSentAtNanos() {
+        return sentAtNanos;
+    }
+}
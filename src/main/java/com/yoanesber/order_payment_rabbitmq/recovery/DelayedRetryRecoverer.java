@@ -0,0 +1,162 @@
+package com.yoanesber.order_payment_rabbitmq.recovery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+
+/**
+ * DelayedRetryRecoverer retries a failed message through the delay queues declared in RabbitMQConfig
+ * instead of backing off on the consumer thread.
+ * The attempt count is tracked in the x-retry-attempt header. While attempts remain, the message is republished
+ * to the delay queue of the next attempt and acknowledged; the consumer moves on to the next message right away.
+ * Once all attempts are used, or if the republish is not confirmed or is returned as unroutable, the message is rejected to the DLQ as before.
+ * A batch can only be acknowledged or rejected as a whole, so for batch listeners the messages that cannot be scheduled
+ * are published to their DLQ one by one, carrying their original exchange and routing key in x-original-* headers,
+ * and the batch is acknowledged; the messages already scheduled for a retry are therefore not dead-lettered as well.
+ */
+
+@Component
+public class DelayedRetryRecoverer extends LoggingRejectAndDontRequeueRecoverer {
+
+    public static final String RETRY_ATTEMPT_HEADER = "x-retry-attempt";
+
+    public static final String ORIGINAL_EXCHANGE_HEADER = "x-original-exchange";
+
+    public static final String ORIGINAL_ROUTING_KEY_HEADER = "x-original-routing-key";
+
+    private static final long REPUBLISH_CONFIRM_TIMEOUT = 5000L; // 5 seconds
+
+    @Value("${spring.rabbitmq.order-payment.retry.delays:1000,5000,15000}")
+    private long[] retryDelays;
+
+    @Value("${spring.rabbitmq.order-payment.exchange-retry-name:order.payment.retry.exchange}")
+    private String paymentExchangeRetryName;
+
+    @Value("${spring.rabbitmq.order-payment.payment-failed-queue-name}")
+    private String paymentFailedQueueName;
+
+    @Value("${spring.rabbitmq.order-payment.exchange-dlx-name}")
+    private String paymentExchangeDlxName;
+
+    @Value("${spring.rabbitmq.order-payment.dlq-success-routing-key}")
+    private String deadLetterRoutingKeySuccess;
+
+    @Value("${spring.rabbitmq.order-payment.dlq-failed-routing-key}")
+    private String deadLetterRoutingKeyFailed;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public DelayedRetryRecoverer(RabbitTemplate rabbitTemplate, PaymentMetrics paymentMetrics) {
+        super(paymentMetrics);
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    @Override
+    public void recover(Message message, Throwable cause) {
+        // All delayed attempts are used or the retry could not be scheduled; reject the message to the DLQ
+        if (!this.scheduleRetry(message, cause)) {
+            super.recover(message, cause);
+        }
+    }
+
+    @Override
+    public void recover(List<Message> messages, Throwable cause) {
+        List<Message> unscheduled = new ArrayList<>();
+        for (Message message : messages) {
+            if (!this.scheduleRetry(message, cause)) {
+                unscheduled.add(message);
+            }
+        }
+
+        // Dead-letter only the messages without a retry; the batch is then acknowledged as a whole
+        boolean allDeadLettered = true;
+        for (Message message : unscheduled) {
+            allDeadLettered &= this.deadLetter(message, cause);
+        }
+
+        if (!allDeadLettered) {
+            // Last resort: reject the whole batch, even though some of its messages may now be in a delay queue or DLQ too
+            logger.error("Failed to dead-letter {} messages of a batch of {}, rejecting the whole batch", 
+                unscheduled.size(), messages.size());
+            super.recover(messages, cause);
+        }
+    }
+
+    private boolean scheduleRetry(Message message, Throwable cause) {
+        Integer previousAttempt = message.getMessageProperties().getHeader(RETRY_ATTEMPT_HEADER);
+        int attempt = (previousAttempt != null ? previousAttempt : 0) + 1;
+        String consumerQueue = message.getMessageProperties().getConsumerQueue();
+        if (attempt > retryDelays.length || consumerQueue == null) {
+            return false;
+        }
+
+        String retryRoutingKey = consumerQueue + ".retry." + attempt;
+        message.getMessageProperties().setHeader(RETRY_ATTEMPT_HEADER, attempt);
+
+        try {
+            // Wait for the confirm, so the original is only acknowledged once its retry copy is safely on the broker
+            this.publishConfirmed(paymentExchangeRetryName, retryRoutingKey, message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.error("Failed to schedule delayed retry via {}: {}", retryRoutingKey, e.getMessage());
+            return false;
+        }
+
+        paymentMetrics.recordRecovery(consumerQueue, "delayed");
+        logger.warn("Message processing failed, scheduled attempt {} of {} in {} ms via {}. Cause: {}", 
+            attempt, retryDelays.length, retryDelays[attempt - 1], retryRoutingKey, cause.getMessage());
+        return true;
+    }
+
+    private boolean deadLetter(Message message, Throwable cause) {
+        // Route the message the way its queue's dead-letter arguments would; the shard queues share the success DLQ
+        String consumerQueue = message.getMessageProperties().getConsumerQueue();
+        String deadLetterRoutingKey = paymentFailedQueueName.equals(consumerQueue) 
+            ? deadLetterRoutingKeyFailed : deadLetterRoutingKeySuccess;
+
+        // The broker only records x-death when it dead-letters a message itself, so keep the origin for a later re-drive
+        message.getMessageProperties().setHeader(ORIGINAL_EXCHANGE_HEADER, message.getMessageProperties().getReceivedExchange());
+        message.getMessageProperties().setHeader(ORIGINAL_ROUTING_KEY_HEADER, message.getMessageProperties().getReceivedRoutingKey());
+
+        try {
+            this.publishConfirmed(paymentExchangeDlxName, deadLetterRoutingKey, message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.error("Failed to dead-letter message of batch via {}: {}", deadLetterRoutingKey, e.getMessage());
+            return false;
+        }
+
+        paymentMetrics.recordRecovery(consumerQueue, "rejected");
+        logger.error("Message of a batch could not be retried, moved it to the DLQ via {}. Cause: {}", 
+            deadLetterRoutingKey, cause.getMessage());
+        return true;
+    }
+
+    private void publishConfirmed(String exchangeName, String routingKey, Message message) throws Exception {
+        CorrelationData correlationData = new CorrelationData();
+        rabbitTemplate.send(exchangeName, routingKey, message, correlationData);
+        if (!correlationData.getFuture().get(REPUBLISH_CONFIRM_TIMEOUT, TimeUnit.MILLISECONDS).isAck()) {
+            throw new IllegalStateException("Message not acknowledged by broker");
+        }
+
+        // The broker acknowledges an unroutable message too, e.g. when a delay queue is missing; it returns it first
+        if (correlationData.getReturned() != null) {
+            throw new IllegalStateException("Message returned by broker, replyCode: " + correlationData.getReturned().getReplyCode());
+        }
+    }
+}
@@ -1,26 +1,39 @@
 package com.yoanesber.order_payment_rabbitmq.recovery;
 
+import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
 import org.springframework.amqp.rabbit.retry.RejectAndDontRequeueRecoverer;
 import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
 import org.springframework.retry.RetryContext;
 import org.springframework.retry.support.RetrySynchronizationManager;
 import org.springframework.stereotype.Component;
 
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+
 /**
  * LoggingRejectAndDontRequeueRecoverer is a custom recoverer that extends RejectAndDontRequeueRecoverer.
  * It logs the error message and retry count when the maximum number of retries is reached.
  * This class is used to handle message recovery in RabbitMQ when retries are exhausted.
+ * It also recovers whole batches for batch listeners, rejecting every message of the batch without requeue.
+ * Every rejected message is counted in the payment.consume.recovered metric.
  */ 
 
  @Component
-public class LoggingRejectAndDontRequeueRecoverer extends RejectAndDontRequeueRecoverer {
+public class LoggingRejectAndDontRequeueRecoverer extends RejectAndDontRequeueRecoverer implements MessageBatchRecoverer {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    protected final PaymentMetrics paymentMetrics;
+
+    public LoggingRejectAndDontRequeueRecoverer(PaymentMetrics paymentMetrics) {
+        this.paymentMetrics = paymentMetrics;
+    }
+
     @Override
     public void recover(Message message, Throwable cause) {
         int retryCount = -1;
@@ -54,8 +67,24 @@ public class LoggingRejectAndDontRequeueRecoverer extends RejectAndDontRequeueRe
         logger.error("Retry Count {}: Max retries reached.", retryCount);
         logger.error("Message: {}", new String(message.getBody()));
         logger.error("Cause: {}", cause.getMessage());
+        paymentMetrics.recordRecovery(message.getMessageProperties().getConsumerQueue(), "rejected");
 
         // Call parent logic to reject and not requeue
         super.recover(message, cause);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void recover(List<Message> messages, Throwable cause) {
+        // Log the error message for every message in the batch
+        logger.error("Batch recovery invoked after retries exhausted. Batch size: {}", messages.size());
+        for (Message message : messages) {
+            logger.error("Message: {}", new String(message.getBody()));
+            paymentMetrics.recordRecovery(message.getMessageProperties().getConsumerQueue(), "rejected");
+        }
+        logger.error("Cause: {}", cause.getMessage());
+
+        // Reject the whole batch and do not requeue it, so the messages are routed to the DLQ
+        throw new ListenerExecutionFailedException("Retry Policy Exhausted", 
+            new AmqpRejectAndDontRequeueException(cause), messages.toArray(new Message[0]));
+    }
+}
@@ -0,0 +1,8 @@
+package com.yoanesber.order_payment_rabbitmq.repository;
+
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+
+public interface OrderPaymentRepository {
+    // Insert a new order payment.
+    void save(OrderPayment orderPayment);
+}
@@ -0,0 +1,11 @@
+package com.yoanesber.order_payment_rabbitmq.repository;
+
+import com.yoanesber.order_payment_rabbitmq.entity.Order;
+
+public interface OrderRepository {
+    // Find an order by its ID, or return null if it does not exist.
+    Order findById(String orderId);
+
+    // Mark an order as paid.
+    void markPaid(String orderId);
+}
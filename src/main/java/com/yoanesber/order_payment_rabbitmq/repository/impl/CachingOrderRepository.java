@@ -0,0 +1,76 @@
+package com.yoanesber.order_payment_rabbitmq.repository.impl;
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yoanesber.order_payment_rabbitmq.entity.Order;
+import com.yoanesber.order_payment_rabbitmq.repository.OrderRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * CachingOrderRepository is a read-through cache in front of the order backing store (OrderRepositoryImpl).
+ * Orders are kept in a size-bounded Caffeine cache (W-TinyLFU eviction) and expire a fixed time after they were loaded,
+ * so a burst of payments for a popular order hits memory instead of the backing store.
+ * Concurrent misses for the same order are collapsed into a single load, and orders that are not found are not cached.
+ * Marking an order as paid invalidates its entry, so the next lookup sees the new payment status.
+ * Cached orders are shared between callers and must be treated as read-only.
+ * The cache is local to this instance; an order updated elsewhere is only seen once its entry expires.
+ */
+
+@Primary
+@Repository
+public class CachingOrderRepository implements OrderRepository {
+
+    @Value("${order-payment.order-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${order-payment.order-cache.expire-after-write:60000}")
+    private long expireAfterWrite;
+
+    private final OrderRepository orderRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, Order> orders;
+
+    public CachingOrderRepository(@Qualifier("orderRepositoryImpl") OrderRepository orderRepository, MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.orders = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMillis(expireAfterWrite))
+            .recordStats()
+            .build();
+
+        // Exposes cache.gets{result=hit|miss}, cache.evictions and cache.size for the "orders" cache
+        CaffeineCacheMetrics.monitor(meterRegistry, orders, "orders");
+    }
+
+    @Override
+    public Order findById(String orderId) {
+        Assert.hasText(orderId, "Order ID must not be empty");
+        return orders.get(orderId, orderRepository::findById);
+    }
+
+    @Override
+    public void markPaid(String orderId) {
+        Assert.hasText(orderId, "Order ID must not be empty");
+
+        // Update the backing store first, so a concurrent lookup cannot re-cache the order as it was before
+        orderRepository.markPaid(orderId);
+        orders.invalidate(orderId);
+    }
+}
@@ -0,0 +1,51 @@
+package com.yoanesber.order_payment_rabbitmq.repository.impl;
+
+import java.sql.Timestamp;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.repository.OrderPaymentRepository;
+
+/**
+ * OrderPaymentRepositoryImpl stores order payments in the local database with JdbcTemplate.
+ * It joins the surrounding transaction, so a payment and the outbox row of its event are committed together.
+ * OrderPayment carries no card CVV and only a masked card number, so neither the CVV nor the full card number is persisted.
+ */
+
+@Repository
+public class OrderPaymentRepositoryImpl implements OrderPaymentRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO order_payment (id, order_id, amount, currency, payment_method, " +
+        "payment_status, card_number, card_expiry, paypal_email, bank_account, bank_name, transaction_id, retry_count, " +
+        "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OrderPaymentRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void save(OrderPayment orderPayment) {
+        Assert.notNull(orderPayment, "OrderPayment must not be null");
+
+        jdbcTemplate.update(INSERT_SQL,
+            orderPayment.getId(),
+            orderPayment.getOrderId(),
+            orderPayment.getAmount(),
+            orderPayment.getCurrency(),
+            orderPayment.getPaymentMethod(),
+            orderPayment.getPaymentStatus(),
+            orderPayment.getCardNumber(),
+            orderPayment.getCardExpiry(),
+            orderPayment.getPaypalEmail(),
+            orderPayment.getBankAccount(),
+            orderPayment.getBankName(),
+            orderPayment.getTransactionId(),
+            orderPayment.getRetryCount(),
+            Timestamp.from(orderPayment.getCreatedAt()),
+            Timestamp.from(orderPayment.getUpdatedAt()));
+    }
+}
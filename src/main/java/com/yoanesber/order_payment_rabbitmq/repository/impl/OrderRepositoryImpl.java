@@ -0,0 +1,102 @@
+package com.yoanesber.order_payment_rabbitmq.repository.impl;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import com.yoanesber.order_payment_rabbitmq.entity.Order;
+import com.yoanesber.order_payment_rabbitmq.entity.OrderDetail;
+import com.yoanesber.order_payment_rabbitmq.repository.OrderRepository;
+
+/**
+ * OrderRepositoryImpl is the backing store of orders.
+ * It simulates the order database (or order service) with dummy data, so every order can be paid repeatedly;
+ * in production every lookup and update here would be a remote call.
+ * OrderPaymentServiceImpl reads orders through CachingOrderRepository, which sits in front of this class.
+ */
+
+@Repository
+public class OrderRepositoryImpl implements OrderRepository {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Override
+    public Order findById(String orderId) {
+        Assert.hasText(orderId, "Order ID must not be empty");
+
+        // Simulate fetching an order from the database
+        // For simplicity, we will create a new Order object with dummy data
+        Order order = new Order();
+        // Unique Order ID
+        order.setOrderId(orderId);
+
+        // Order Date (current timestamp)
+        order.setOrderDate(LocalDateTime.now());
+
+        // Order Status
+        order.setOrderStatus("PENDING");
+
+        // Order Total (e.g., total price of items)
+        order.setOrderTotal(new BigDecimal("199.99"));
+
+        // Currency
+        order.setCurrency("IDR");
+
+        // Customer Information
+        order.setCustomerId("CUST1001");
+        order.setCustomerName("Agus Yulianto");
+        order.setCustomerEmail("agus_yulianto@example.com");
+        order.setCustomerPhone("+62-811-222-3333");
+
+        // Payment Information
+        order.setPaymentMethod("CREDIT_CARD");
+        order.setPaymentStatus("PENDING_PAYMENT");
+
+        // Shipping Information
+        order.setShippingAddress("Jl. Melati V No. 8, Solo, Jawa Tengah, Indonesia");
+        order.setShippingMethod("STANDARD");
+        order.setDeliveryDate(LocalDateTime.now().plusDays(5)); // Expected delivery in 5 days
+
+        // Tax and Discount
+        order.setTaxAmount(new BigDecimal("9.99"));
+        order.setDiscountCode("DISCOUNT10");
+        order.setDiscountAmount(new BigDecimal("10.00"));
+
+        // Metadata
+        order.setCreatedAt(Instant.now());
+        order.setUpdatedAt(Instant.now());
+        order.setProcessedBy("AdminUser");
+
+        // Order Details (list of items in the order)
+        // For simplicity, we will add a single item
+        OrderDetail orderDetail = new OrderDetail();
+        orderDetail.setProductId("PROD1001");
+        orderDetail.setProductName("Product A");
+        orderDetail.setProductPrice(new BigDecimal("99.99"));
+        orderDetail.setQuantity(2);
+        orderDetail.setSubtotal(orderDetail.getProductPrice().multiply(new BigDecimal(orderDetail.getQuantity())));
+        orderDetail.setDiscountAmount(new BigDecimal("10.00"));
+        orderDetail.setTotalPrice(orderDetail.getSubtotal().subtract(orderDetail.getDiscountAmount()));
+        orderDetail.setProductImageUrl("https://example.com/product-a.jpg");
+        orderDetail.setNotes("No special notes");
+
+        // Set the order details
+        order.setOrderDetails(List.of(orderDetail));
+
+        return order;
+    }
+
+    @Override
+    public void markPaid(String orderId) {
+        Assert.hasText(orderId, "Order ID must not be empty");
+
+        // Simulate updating the order in the database
+        // For simplicity, the dummy order is left PENDING_PAYMENT so it can be paid again
+        logger.info("Marking order as paid: {}", orderId);
+    }
+}
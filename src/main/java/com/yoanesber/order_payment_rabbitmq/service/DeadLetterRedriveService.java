@@ -0,0 +1,17 @@
+package com.yoanesber.order_payment_rabbitmq.service;
+
+import java.util.Map;
+
+import com.yoanesber.order_payment_rabbitmq.dto.RedriveJobDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.RedriveRequestDTO;
+
+public interface DeadLetterRedriveService {
+    // Start re-driving the messages of a dead letter queue in the background and return the job.
+    RedriveJobDTO startRedrive(RedriveRequestDTO request);
+
+    // Get the progress of a re-drive job, or null if it is unknown or expired.
+    RedriveJobDTO getJob(String jobId);
+
+    // Get the number of messages in each dead letter queue and in the parking-lot queue.
+    Map<String, Long> getQueueDepths();
+}
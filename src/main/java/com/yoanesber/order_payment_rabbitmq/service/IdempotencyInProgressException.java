@@ -0,0 +1,13 @@
+package com.yoanesber.order_payment_rabbitmq.service;
+
+/**
+ * IdempotencyInProgressException is thrown by IdempotencyService when a request waited for the wait timeout
+ * on the in-flight request with the same idempotency key, and that request has not completed yet.
+ */
+
+public class IdempotencyInProgressException extends IllegalStateException {
+
+    public IdempotencyInProgressException(String message) {
+        super(message);
+    }
+}
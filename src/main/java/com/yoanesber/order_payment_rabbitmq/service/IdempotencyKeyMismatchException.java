@@ -0,0 +1,13 @@
+package com.yoanesber.order_payment_rabbitmq.service;
+
+/**
+ * IdempotencyKeyMismatchException is thrown by IdempotencyService when an idempotency key is reused
+ * with a request that differs from the request it was first used with.
+ */
+
+public class IdempotencyKeyMismatchException extends IllegalStateException {
+
+    public IdempotencyKeyMismatchException(String message) {
+        super(message);
+    }
+}
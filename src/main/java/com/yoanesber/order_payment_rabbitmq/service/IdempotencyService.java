@@ -0,0 +1,11 @@
+package com.yoanesber.order_payment_rabbitmq.service;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+    // Run the operation once per key; concurrent calls with the same key wait for it, later calls replay its result.
+    // A call whose request differs from the first request with the key fails with IdempotencyKeyMismatchException.
+    // Only results that match cacheable are replayed; any other result is returned to the waiting calls and then dropped.
+    <T> T execute(String idempotencyKey, Object request, Supplier<T> operation, Predicate<? super T> cacheable);
+}
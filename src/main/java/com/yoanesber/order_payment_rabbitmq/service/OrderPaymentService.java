@@ -6,4 +6,13 @@ import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
 public interface OrderPaymentService {
     // Create a new OrderPayment record.
     OrderPayment createOrderPayment(CreateOrderPaymentRequestDTO orderPaymentDTO);
+
+    // Enqueue a new OrderPayment request for asynchronous processing and return its payment handle.
+    String submitOrderPayment(CreateOrderPaymentRequestDTO orderPaymentDTO);
+
+    // Process an enqueued OrderPayment request, or park it on its gateway's holding queue when the gateway is at its rate limit.
+    void processOrderPaymentRequest(CreateOrderPaymentRequestDTO orderPaymentDTO);
+
+    // Process an OrderPayment request drained from a holding queue, once its gateway has a token for it.
+    void processParkedOrderPaymentRequest(CreateOrderPaymentRequestDTO orderPaymentDTO, Long parkedAt);
 }
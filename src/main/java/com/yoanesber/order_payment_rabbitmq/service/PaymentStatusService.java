@@ -0,0 +1,17 @@
+package com.yoanesber.order_payment_rabbitmq.service;
+
+import com.yoanesber.order_payment_rabbitmq.dto.OrderPaymentStatusDTO;
+
+public interface PaymentStatusService {
+    // Register a newly submitted payment as PENDING.
+    void markPending(String paymentHandle, String orderId);
+
+    // Record that the payment succeeded with the given gateway transaction ID.
+    void markSucceeded(String paymentHandle, String orderId, String transactionId);
+
+    // Record that the payment failed with the given reason.
+    void markFailed(String paymentHandle, String message);
+
+    // Get the current status of a payment, or null if it is unknown or expired.
+    OrderPaymentStatusDTO getStatus(String paymentHandle);
+}
@@ -0,0 +1,460 @@
+package com.yoanesber.order_payment_rabbitmq.service.impl;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+import com.yoanesber.order_payment_rabbitmq.dto.RedriveJobDTO;
+import com.yoanesber.order_payment_rabbitmq.dto.RedriveRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.gateway.TokenBucket;
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+import com.yoanesber.order_payment_rabbitmq.recovery.DelayedRetryRecoverer;
+import com.yoanesber.order_payment_rabbitmq.service.DeadLetterRedriveService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * DeadLetterRedriveServiceImpl replays dead-lettered messages to the exchange and routing key they were originally published to,
+ * which the broker records in the newest entry of the x-death header. Messages the batch listeners publish to their DLQ themselves
+ * have no x-death header and carry their origin in the x-original-exchange and x-original-routing-key headers instead.
+ * Only the payment success and failed DLQs can be re-driven; replaying a dead-lettered payment request would charge the customer again.
+ * A job reads its queue in batches with basic.get and manual acknowledgements, republishes each matching message at a bounded rate,
+ * waits for the publisher confirms of the batch and only then acknowledges the originals, so no message is lost if the job stops halfway.
+ * Messages without an origin, messages already re-driven order-payment.redrive.max-redrives times, and messages the broker
+ * returns as unroutable are moved to the parking-lot queue instead, with the reason in the x-parked-reason header.
+ * Messages that do not match the filters, or whose republish is not confirmed, are published again to the tail of the dead letter queue
+ * and acknowledged with their batch, so a job holds at most one batch of unacknowledged messages. A job reads no more messages
+ * than the queue held when it started, so it does not read those messages a second time.
+ * Jobs run one at a time per queue on a virtual thread and are kept in memory, bounded in number, like payment statuses.
+ */
+
+@Service
+public class DeadLetterRedriveServiceImpl implements DeadLetterRedriveService {
+
+    public static final String REDRIVE_COUNT_HEADER = "x-redrive-count";
+
+    public static final String PARKED_REASON_HEADER = "x-parked-reason";
+
+    // Headers set when a message is dead-lettered, by the broker or by DelayedRetryRecoverer; a re-driven message starts without them
+    private static final List<String> DEAD_LETTER_HEADERS = List.of("x-death",
+        "x-first-death-exchange", "x-first-death-queue", "x-first-death-reason",
+        "x-last-death-exchange", "x-last-death-queue", "x-last-death-reason",
+        DelayedRetryRecoverer.ORIGINAL_EXCHANGE_HEADER, DelayedRetryRecoverer.ORIGINAL_ROUTING_KEY_HEADER);
+
+    @Value("${spring.rabbitmq.order-payment.dlq-success-queue-name}")
+    private String deadLetterQueueSuccessName;
+
+    @Value("${spring.rabbitmq.order-payment.dlq-failed-queue-name}")
+    private String deadLetterQueueFailedName;
+
+    @Value("${spring.rabbitmq.order-payment.dlq-request-queue-name:order.payment.requests.dlq}")
+    private String deadLetterQueueRequestName;
+
+    @Value("${spring.rabbitmq.order-payment.exchange-dlx-name}")
+    private String paymentExchangeDlxName;
+
+    @Value("${spring.rabbitmq.order-payment.parking-lot-queue-name:order.payment.parking-lot.queue}")
+    private String parkingLotQueueName;
+
+    @Value("${spring.rabbitmq.order-payment.parking-lot-routing-key:order.payment.parking-lot}")
+    private String parkingLotRoutingKey;
+
+    @Value("${order-payment.redrive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${order-payment.redrive.rate:1000}")
+    private double defaultRate;
+
+    @Value("${order-payment.redrive.max-messages:1000000}")
+    private int defaultMaxMessages;
+
+    @Value("${order-payment.redrive.max-redrives:3}")
+    private int maxRedrives;
+
+    @Value("${order-payment.redrive.confirm-timeout:5000}")
+    private long confirmTimeout;
+
+    @Value("${order-payment.redrive.max-jobs:100}")
+    private long maxJobs;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final AmqpAdmin amqpAdmin;
+
+    private final PaymentMetrics paymentMetrics;
+
+    private final MessagePropertiesConverter messagePropertiesConverter = new DefaultMessagePropertiesConverter();
+
+    private final ExecutorService redriveExecutor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("dlq-redrive-", 0).factory());
+
+    // Queues with a running job
+    private final Set<String> activeQueues = ConcurrentHashMap.newKeySet();
+
+    private Cache<String, RedriveJob> jobs;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public DeadLetterRedriveServiceImpl(RabbitTemplate rabbitTemplate, AmqpAdmin amqpAdmin, PaymentMetrics paymentMetrics) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (batchSize <= 0 || defaultRate <= 0 || defaultMaxMessages <= 0 || maxRedrives < 0) {
+            throw new IllegalStateException("Invalid re-drive settings: batch-size, rate and max-messages must be positive"
+                + " and max-redrives must not be negative");
+        }
+
+        this.jobs = Caffeine.newBuilder()
+            .maximumSize(maxJobs)
+            .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupt running jobs; they stop after their current batch and leave the rest of the queue as it is
+        redriveExecutor.shutdownNow();
+    }
+
+    @Override
+    public RedriveJobDTO startRedrive(RedriveRequestDTO request) {
+        this.validate(request);
+
+        String queueName = request.getQueueName();
+        if (!activeQueues.add(queueName)) {
+            throw new IllegalStateException("A re-drive job is already running for " + queueName);
+        }
+
+        RedriveJob job = new RedriveJob(UUID.randomUUID().toString(), queueName);
+        jobs.put(job.jobId, job);
+        try {
+            redriveExecutor.execute(() -> this.run(job, request));
+        } catch (RejectedExecutionException e) {
+            activeQueues.remove(queueName);
+            job.finish("FAILED", "Application is shutting down");
+            throw new IllegalStateException("Re-drive job could not be started", e);
+        }
+
+        logger.info("Started re-drive job {} for {}", job.jobId, queueName);
+        return job.toDTO();
+    }
+
+    @Override
+    public RedriveJobDTO getJob(String jobId) {
+        RedriveJob job = jobId != null ? jobs.getIfPresent(jobId) : null;
+        return job != null ? job.toDTO() : null;
+    }
+
+    @Override
+    public Map<String, Long> getQueueDepths() {
+        Map<String, Long> depths = new LinkedHashMap<>();
+        for (String queueName : List.of(deadLetterQueueSuccessName, deadLetterQueueFailedName,
+            deadLetterQueueRequestName, parkingLotQueueName)) {
+            QueueInformation queueInformation = amqpAdmin.getQueueInfo(queueName);
+            if (queueInformation != null) {
+                depths.put(queueName, (long) queueInformation.getMessageCount());
+            }
+        }
+        return depths;
+    }
+
+    private void validate(RedriveRequestDTO request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Re-drive request cannot be null");
+        }
+        if (deadLetterQueueRequestName.equals(request.getQueueName())) {
+            // A payment request is only dead-lettered after its gateway call may have run, so replaying it could charge twice
+            throw new IllegalArgumentException("Payment requests cannot be re-driven: " + request.getQueueName());
+        }
+        if (!List.of(deadLetterQueueSuccessName, deadLetterQueueFailedName).contains(request.getQueueName())) {
+            throw new IllegalArgumentException("Queue is not a dead letter queue: " + request.getQueueName());
+        }
+        if ((request.getMinAge() != null && request.getMinAge() < 0)
+            || (request.getMaxAge() != null && request.getMaxAge() < 0)
+            || (request.getMinAge() != null && request.getMaxAge() != null && request.getMinAge() > request.getMaxAge())) {
+            throw new IllegalArgumentException("Invalid age range");
+        }
+        if (request.getMaxMessages() != null && request.getMaxMessages() <= 0) {
+            throw new IllegalArgumentException("Max messages must be positive");
+        }
+        if (request.getRatePerSecond() != null && request.getRatePerSecond() <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+    }
+
+    private void run(RedriveJob job, RedriveRequestDTO request) {
+        long maxMessages = request.getMaxMessages() != null ? request.getMaxMessages() : defaultMaxMessages;
+        TokenBucket rateLimit = new TokenBucket(
+            request.getRatePerSecond() != null ? request.getRatePerSecond() : defaultRate, batchSize);
+
+        try {
+            rabbitTemplate.execute(channel -> {
+                // Close the channel for real instead of returning it to the cache,
+                // so the broker requeues every message the job left unacknowledged
+                RabbitUtils.setPhysicalCloseRequired(channel, true);
+
+                // Messages the job puts back go to the tail of the queue, behind the ones it has yet to read
+                long scanLimit = Math.min(maxMessages, channel.queueDeclarePassive(job.queueName).getMessageCount());
+
+                boolean drained = false;
+                while (!drained && job.scanned.get() < scanLimit) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        job.finish("CANCELLED", "Re-drive job was interrupted");
+                        return null;
+                    }
+
+                    List<PendingPublish> batch = new ArrayList<>(batchSize);
+                    long limit = Math.min(batchSize, scanLimit - job.scanned.get());
+                    for (long i = 0; i < limit; i++) {
+                        GetResponse response = channel.basicGet(job.queueName, false);
+                        if (response == null) {
+                            drained = true;
+                            break;
+                        }
+
+                        job.scanned.incrementAndGet();
+                        Message message = new Message(response.getBody(), messagePropertiesConverter.toMessageProperties(
+                            response.getProps(), response.getEnvelope(), "UTF-8"));
+                        batch.add(this.dispatch(message, response.getEnvelope().getDeliveryTag(), job, request, rateLimit));
+                    }
+
+                    this.settle(channel, batch, job, rateLimit);
+                }
+
+                job.finish("COMPLETED", null);
+                return null;
+            });
+        } catch (Exception e) {
+            logger.error("Re-drive job {} for {} failed: {}", job.jobId, job.queueName, e.getMessage());
+            job.finish("FAILED", e.getMessage());
+        } finally {
+            activeQueues.remove(job.queueName);
+        }
+
+        logger.info("Re-drive job {} for {} ended with status {}: {} scanned, {} republished, {} parked, {} skipped, {} failed",
+            job.jobId, job.queueName, job.status, job.scanned.get(), job.republished.get(), job.parked.get(),
+            job.skipped.get(), job.failed.get());
+    }
+
+    private PendingPublish dispatch(Message message, long deliveryTag, RedriveJob job, RedriveRequestDTO request,
+        TokenBucket rateLimit) {
+        MessageProperties properties = message.getMessageProperties();
+        Map<String, ?> death = this.latestDeath(properties);
+        String exchange;
+        String routingKey;
+        if (death != null) {
+            exchange = (String) death.get("exchange");
+            routingKey = death.get("routing-keys") instanceof List<?> routingKeys && !routingKeys.isEmpty()
+                ? String.valueOf(routingKeys.get(0)) : null;
+        } else {
+            // Published to the DLQ by a batch listener rather than dead-lettered by the broker
+            exchange = properties.getHeader(DelayedRetryRecoverer.ORIGINAL_EXCHANGE_HEADER);
+            routingKey = properties.getHeader(DelayedRetryRecoverer.ORIGINAL_ROUTING_KEY_HEADER);
+        }
+
+        if (!this.matches(request, death, routingKey)) {
+            return this.putBack(message, deliveryTag, job, Outcome.SKIPPED);
+        }
+
+        if (exchange == null || routingKey == null) {
+            return this.park(message, deliveryTag, "no-origin", rateLimit);
+        }
+
+        Number previousRedrives = properties.getHeader(REDRIVE_COUNT_HEADER);
+        int redrives = previousRedrives != null ? previousRedrives.intValue() : 0;
+        if (redrives >= maxRedrives) {
+            return this.park(message, deliveryTag, "max-redrives", rateLimit);
+        }
+
+        // The re-driven copy gets a fresh set of delayed retries and no stale dead-letter headers
+        Message redrivenMessage = MessageBuilder.fromClonedMessage(message)
+            .setHeader(REDRIVE_COUNT_HEADER, redrives + 1)
+            .build();
+        Map<String, Object> headers = redrivenMessage.getMessageProperties().getHeaders();
+        headers.remove(DelayedRetryRecoverer.RETRY_ATTEMPT_HEADER);
+        DEAD_LETTER_HEADERS.forEach(headers::remove);
+
+        return new PendingPublish(deliveryTag, message, Outcome.REPUBLISHED,
+            this.publish(exchange, routingKey, redrivenMessage, rateLimit));
+    }
+
+    private PendingPublish park(Message message, long deliveryTag, String reason, TokenBucket rateLimit) {
+        // Parked messages keep their dead-letter headers for whoever investigates them
+        Message parkedMessage = MessageBuilder.fromClonedMessage(message)
+            .setHeader(PARKED_REASON_HEADER, reason)
+            .build();
+        return new PendingPublish(deliveryTag, message, Outcome.PARKED,
+            this.publish(paymentExchangeDlxName, parkingLotRoutingKey, parkedMessage, rateLimit));
+    }
+
+    private PendingPublish putBack(Message message, long deliveryTag, RedriveJob job, Outcome outcome) {
+        // An unchanged copy through the default exchange; it does not reach a consumer, so it is not rate limited
+        return new PendingPublish(deliveryTag, message, outcome,
+            this.send("", job.queueName, MessageBuilder.fromClonedMessage(message).build()));
+    }
+
+    private void settle(Channel channel, List<PendingPublish> batch, RedriveJob job, TokenBucket rateLimit) throws Exception {
+        List<PendingPublish> retried = new ArrayList<>();
+        for (PendingPublish pending : batch) {
+            if (this.confirmed(pending.correlationData)) {
+                channel.basicAck(pending.deliveryTag, false);
+                this.record(job, pending.outcome);
+            } else if (pending.outcome == Outcome.REPUBLISHED && pending.correlationData.getReturned() != null) {
+                // The original exchange no longer routes the message anywhere, so replaying it again would not help
+                retried.add(this.park(pending.message, pending.deliveryTag, "unroutable", rateLimit));
+            } else if (pending.outcome == Outcome.REPUBLISHED || pending.outcome == Outcome.PARKED) {
+                retried.add(this.putBack(pending.message, pending.deliveryTag, job, Outcome.FAILED));
+            } else {
+                // Not even the copy reached the dead letter queue; the original goes back when the job's channel is closed
+                this.record(job, Outcome.FAILED);
+            }
+        }
+
+        if (!retried.isEmpty()) {
+            this.settle(channel, retried, job, rateLimit);
+        }
+    }
+
+    private void record(RedriveJob job, Outcome outcome) {
+        (switch (outcome) {
+            case REPUBLISHED -> job.republished;
+            case PARKED -> job.parked;
+            case SKIPPED -> job.skipped;
+            case FAILED -> job.failed;
+        }).incrementAndGet();
+        paymentMetrics.recordRedrive(job.queueName, outcome.name().toLowerCase());
+    }
+
+    private CorrelationData publish(String exchange, String routingKey, Message message, TokenBucket rateLimit) {
+        long waitNanos;
+        while ((waitNanos = rateLimit.nanosUntilNextToken()) > 0 || !rateLimit.tryConsume()) {
+            LockSupport.parkNanos(Math.max(waitNanos, 1));
+        }
+
+        return this.send(exchange, routingKey, message);
+    }
+
+    private CorrelationData send(String exchange, String routingKey, Message message) {
+        CorrelationData correlationData = new CorrelationData();
+        rabbitTemplate.send(exchange, routingKey, message, correlationData);
+        return correlationData;
+    }
+
+    private boolean confirmed(CorrelationData correlationData) throws InterruptedException {
+        try {
+            // The broker returns an unroutable message before it confirms it, so a confirmed message without a return was routed
+            return correlationData.getFuture().get(confirmTimeout, TimeUnit.MILLISECONDS).isAck()
+                && correlationData.getReturned() == null;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    private Map<String, ?> latestDeath(MessageProperties properties) {
+        // The broker keeps the most recent dead-lettering event first
+        List<Map<String, ?>> deaths = properties.getXDeathHeader();
+        return deaths != null && !deaths.isEmpty() ? deaths.get(0) : null;
+    }
+
+    private boolean matches(RedriveRequestDTO request, Map<String, ?> death, String routingKey) {
+        // Without an x-death entry there is no reason or dead-lettering time to filter on
+        if (request.getReason() != null
+            && (death == null || !request.getReason().equals(String.valueOf(death.get("reason"))))) {
+            return false;
+        }
+        if (request.getRoutingKey() != null && !request.getRoutingKey().equals(routingKey)) {
+            return false;
+        }
+        if (request.getMinAge() != null || request.getMaxAge() != null) {
+            if (death == null || !(death.get("time") instanceof Date deadLetteredAt)) {
+                return false;
+            }
+            long age = System.currentTimeMillis() - deadLetteredAt.getTime();
+            return (request.getMinAge() == null || age >= request.getMinAge())
+                && (request.getMaxAge() == null || age <= request.getMaxAge());
+        }
+        return true;
+    }
+
+    // What happened to a message once its publish is confirmed; skipped and failed messages are put back on the dead letter queue
+    private enum Outcome { REPUBLISHED, PARKED, SKIPPED, FAILED }
+
+    private record PendingPublish(long deliveryTag, Message message, Outcome outcome, CorrelationData correlationData) {}
+
+    private static class RedriveJob {
+
+        private final String jobId;
+
+        private final String queueName;
+
+        private final Instant startedAt = Instant.now();
+
+        private final AtomicLong scanned = new AtomicLong();
+
+        private final AtomicLong republished = new AtomicLong();
+
+        private final AtomicLong parked = new AtomicLong();
+
+        private final AtomicLong skipped = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        private volatile String status = "RUNNING";
+
+        private volatile String message;
+
+        private volatile Instant finishedAt;
+
+        private RedriveJob(String jobId, String queueName) {
+            this.jobId = jobId;
+            this.queueName = queueName;
+        }
+
+        private void finish(String status, String message) {
+            this.message = message;
+            this.finishedAt = Instant.now();
+            this.status = status;
+        }
+
+        private RedriveJobDTO toDTO() {
+            return new RedriveJobDTO(jobId, queueName, status, scanned.get(), republished.get(), parked.get(),
+                skipped.get(), failed.get(), message, startedAt, finishedAt);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.yoanesber.order_payment_rabbitmq.service.impl;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yoanesber.order_payment_rabbitmq.service.IdempotencyInProgressException;
+import com.yoanesber.order_payment_rabbitmq.service.IdempotencyKeyMismatchException;
+import com.yoanesber.order_payment_rabbitmq.service.IdempotencyService;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * IdempotencyServiceImpl absorbs client retries of the same request.
+ * The first call for a key runs the operation and stores its pending result in a bounded, time-expiring cache.
+ * Calls that arrive while it is still running wait for that same result instead of calling the gateway again,
+ * and calls after it completed get the cached result replayed. A waiting call gives up after the wait timeout
+ * with an IdempotencyInProgressException, so a stuck first request never blocks its retries indefinitely.
+ * Failed operations, including ones that fail with an Error, are removed from the cache, so the client can retry them,
+ * and so are results the caller does not mark cacheable, e.g. a payment that did not succeed.
+ * Each entry keeps a SHA-256 hash of the JSON form of its request, not the request itself, so card data is not retained;
+ * reusing a key with a different request fails with an IdempotencyKeyMismatchException instead of replaying the result.
+ * The cache is local to this instance; retries routed to another instance are not deduplicated.
+ */
+
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    @Value("${order-payment.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${order-payment.idempotency.max-size:100000}")
+    private long maxSize;
+
+    @Value("${order-payment.idempotency.expire-after-write:3600000}")
+    private long expireAfterWrite;
+
+    @Value("${order-payment.idempotency.wait-timeout:30000}")
+    private long waitTimeout;
+
+    private Cache<String, IdempotentResult> results;
+
+    private final ObjectMapper objectMapper;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public IdempotencyServiceImpl(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.results = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMillis(expireAfterWrite))
+            .build();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String idempotencyKey, Object request, Supplier<T> operation, Predicate<? super T> cacheable) {
+        if (!enabled || idempotencyKey == null || idempotencyKey.isBlank()) {
+            return operation.get();
+        }
+
+        IdempotentResult created = new IdempotentResult(this.hash(request), new CompletableFuture<>());
+        IdempotentResult existing = results.asMap().putIfAbsent(idempotencyKey, created);
+
+        if (existing != null) {
+            if (!MessageDigest.isEqual(existing.requestHash(), created.requestHash())) {
+                throw new IdempotencyKeyMismatchException("Idempotency key " + idempotencyKey + 
+                    " was already used with a different request");
+            }
+
+            // Coalesce onto the in-flight or completed result of the first request
+            logger.info("Replaying result for idempotency key: {}", idempotencyKey);
+            try {
+                return (T) existing.result().get(waitTimeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new IdempotencyInProgressException("Request with idempotency key " + idempotencyKey + 
+                    " is still in progress after " + waitTimeout + " ms");
+            } catch (ExecutionException e) {
+                throw this.unwrap(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the result of idempotency key " + idempotencyKey, e);
+            }
+        }
+
+        try {
+            T result = operation.get();
+            if (!cacheable.test(result)) {
+                // Calls already waiting still share this result, but a later retry runs the operation again
+                results.asMap().remove(idempotencyKey, created);
+            }
+            created.result().complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Do not keep failures, so a retry runs the operation again; waiting calls get the failure instead of hanging
+            results.asMap().remove(idempotencyKey, created);
+            created.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private byte[] hash(Object request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request cannot be serialized: " + e.getMessage(), e);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof Error error) {
+            throw error;
+        }
+        return e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+    }
+
+    // The pending or completed result of the first request with a key, and the hash of that request
+    private record IdempotentResult(byte[] requestHash, CompletableFuture<Object> result) {
+    }
+}
@@ -1,29 +1,42 @@
 package com.yoanesber.order_payment_rabbitmq.service.impl;
 
-import java.math.BigDecimal;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.util.List;
+import java.util.UUID;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
 import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
-import com.yoanesber.order_payment_rabbitmq.dto.PaymentBankRequestDTO;
-import com.yoanesber.order_payment_rabbitmq.dto.PaymentCCRequestDTO;
-import com.yoanesber.order_payment_rabbitmq.dto.PaymentPaypalRequestDTO;
 import com.yoanesber.order_payment_rabbitmq.dto.PaymentResponseDTO;
 import com.yoanesber.order_payment_rabbitmq.entity.CustomException;
-import com.yoanesber.order_payment_rabbitmq.entity.Order;
-import com.yoanesber.order_payment_rabbitmq.entity.OrderDetail;
 import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.gateway.GatewayExecutor;
+import com.yoanesber.order_payment_rabbitmq.gateway.GatewayRateLimiter;
+import com.yoanesber.order_payment_rabbitmq.gateway.GatewayUnavailableException;
+import com.yoanesber.order_payment_rabbitmq.gateway.PaymentGateway;
+import com.yoanesber.order_payment_rabbitmq.gateway.PaymentGatewayRegistry;
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
 import com.yoanesber.order_payment_rabbitmq.publisher.MessagePublisher;
+import com.yoanesber.order_payment_rabbitmq.publisher.PublishContext;
+import com.yoanesber.order_payment_rabbitmq.repository.OrderPaymentRepository;
 import com.yoanesber.order_payment_rabbitmq.service.OrderPaymentService;
+import com.yoanesber.order_payment_rabbitmq.service.PaymentStatusService;
+import com.yoanesber.order_payment_rabbitmq.util.SnowflakeIdGenerator;
 
 /**
  * OrderPaymentServiceImpl is a service class that handles the creation of order payments.
- * It validates the payment request, processes the payment through different methods (credit card, PayPal, bank transfer),
+ * It validates the payment request with OrderPaymentValidator, processes the payment through different methods (credit card, PayPal, bank transfer),
  * and publishes the payment result to RabbitMQ.
+ * Method-specific validation and gateway calls are delegated to the PaymentGateway registered for the request's PaymentMethod.
+ * Gateway calls go through GatewayExecutor, which isolates the gateways with per-gateway bulkheads, circuit breakers and timeouts.
+ * A call that is rejected or times out fails fast, and its failure is published to the failed routing key.
+ * Every gateway can also be rate limited: synchronous payments wait a bounded time for a token, while asynchronous requests
+ * without a token are parked on the gateway's holding queue and processed once PaymentRequestListener drains them.
+ * A successful payment is saved in a local transaction; with the OUTBOX publisher mode its event is written to the outbox
+ * in that transaction, and in the other modes MessagePublisher sends the event to the broker once the transaction has committed.
+ * OrderPaymentValidator looks orders up through OrderRepository, which serves repeated payments for the same order from a cache.
+ * Order payment ids come from SnowflakeIdGenerator, so they stay unique across threads and instances.
  */
 
 @Service
@@ -41,316 +54,156 @@ public class OrderPaymentServiceImpl implements OrderPaymentService {
     @Value("${spring.rabbitmq.order-payment.payment-failed-routing-key}")
     private String paymentFailedRoutingKey;
 
-    private final MessagePublisher messagePublisher;
+    @Value("${spring.rabbitmq.order-payment.payment-request-routing-key:order.payment.requests}")
+    private String paymentRequestRoutingKey;
 
-    public OrderPaymentServiceImpl(MessagePublisher messagePublisher) {
-        this.messagePublisher = messagePublisher;
-    }
+    @Value("${order-payment.gateway.rate-limit.max-wait:1000}")
+    private long rateLimitMaxWait;
 
-    private Order getOrderByID (String orderId) {
-        // Simulate fetching an order from the database
-        // For simplicity, we will create a new Order object with dummy data
-        Order order = new Order();
-        // Unique Order ID
-        order.setOrderId(orderId);
-
-        // Order Date (current timestamp)
-        order.setOrderDate(LocalDateTime.now());
-
-        // Order Status
-        order.setOrderStatus("PENDING");
-
-        // Order Total (e.g., total price of items)
-        order.setOrderTotal(new BigDecimal("199.99"));
-
-        // Currency
-        order.setCurrency("IDR");
-
-        // Customer Information
-        order.setCustomerId("CUST1001");
-        order.setCustomerName("Agus Yulianto");
-        order.setCustomerEmail("agus_yulianto@example.com");
-        order.setCustomerPhone("+62-811-222-3333");
-
-        // Payment Information
-        order.setPaymentMethod("CREDIT_CARD");
-        order.setPaymentStatus("PENDING_PAYMENT");
-
-        // Shipping Information
-        order.setShippingAddress("Jl. Melati V No. 8, Solo, Jawa Tengah, Indonesia");
-        order.setShippingMethod("STANDARD");
-        order.setDeliveryDate(LocalDateTime.now().plusDays(5)); // Expected delivery in 5 days
-
-        // Tax and Discount
-        order.setTaxAmount(new BigDecimal("9.99"));
-        order.setDiscountCode("DISCOUNT10");
-        order.setDiscountAmount(new BigDecimal("10.00"));
-
-        // Metadata
-        order.setCreatedAt(Instant.now());
-        order.setUpdatedAt(Instant.now());
-        order.setProcessedBy("AdminUser");
-
-        // Order Details (list of items in the order)
-        // For simplicity, we will add a single item
-        OrderDetail orderDetail = new OrderDetail();
-        orderDetail.setProductId("PROD1001");
-        orderDetail.setProductName("Product A");
-        orderDetail.setProductPrice(new BigDecimal("99.99"));
-        orderDetail.setQuantity(2);
-        orderDetail.setSubtotal(orderDetail.getProductPrice().multiply(new BigDecimal(orderDetail.getQuantity())));
-        orderDetail.setDiscountAmount(new BigDecimal("10.00"));
-        orderDetail.setTotalPrice(orderDetail.getSubtotal().subtract(orderDetail.getDiscountAmount()));
-        orderDetail.setProductImageUrl("https://example.com/product-a.jpg");
-        orderDetail.setNotes("No special notes");
-
-        // Set the order details
-        order.setOrderDetails(List.of(orderDetail));
-
-        return order;
-    }
+    private final MessagePublisher messagePublisher;
 
-    private void validateOrderPayment(CreateOrderPaymentRequestDTO orderPaymentDTO) {
-        try {
-            // Validate the order payment request
-            Assert.notNull(orderPaymentDTO, "OrderPaymentDTO must not be null");
-            Assert.notNull(orderPaymentDTO.getOrderId(), "Order ID must not be null");
-            Assert.notNull(orderPaymentDTO.getAmount(), "Amount must not be null");
-            Assert.isTrue(orderPaymentDTO.getAmount().compareTo(BigDecimal.ZERO) > 0, "Amount must be greater than zero");
-            Assert.notNull(orderPaymentDTO.getCurrency(), "Currency must not be null");
-            Assert.notNull(orderPaymentDTO.getPaymentMethod(), "Payment method must not be null");
+    private final GatewayExecutor gatewayExecutor;
 
-            // Additional validation checks can be added here
+    private final PaymentStatusService paymentStatusService;
 
-        } catch (IllegalArgumentException e) {
-            String errorMessage = "Validation failed for order payment: " + e.getMessage();
+    private final OrderPaymentRepository orderPaymentRepository;
 
-            // Publish a message to the failed queue
-            messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                new CustomException(errorMessage));
-            
-            // Throw an exception if the payment method is invalid
-            throw new IllegalArgumentException(errorMessage);
-        }
+    private final TransactionTemplate transactionTemplate;
 
-        if (orderPaymentDTO.getPaymentMethod().equalsIgnoreCase("CREDIT_CARD")) {
-            try {
-                Assert.notNull(orderPaymentDTO.getCardNumber(), "Card number must not be null");
-                Assert.notNull(orderPaymentDTO.getCardExpiry(), "Card expiry date must not be null");
-                Assert.notNull(orderPaymentDTO.getCardCvv(), "Card CVV must not be null");
-            } catch (IllegalArgumentException e) {
-                String errorMessage = "Validation failed for credit card payment: " + e.getMessage();
-
-                // Publish a message to the failed queue
-                messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                    new CustomException(errorMessage));
-                
-                // Throw an exception if the payment method is invalid
-                throw new IllegalArgumentException(errorMessage);
-            }
-        } else if (orderPaymentDTO.getPaymentMethod().equalsIgnoreCase("PAYPAL")) {
-            try {
-                Assert.notNull(orderPaymentDTO.getPaypalEmail(), "PayPal email must not be null");
-            } catch (IllegalArgumentException e) {
-                String errorMessage = "Validation failed for PayPal payment: " + e.getMessage();
-
-                // Publish a message to the failed queue
-                messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                    new CustomException(errorMessage));
-                
-                // Throw an exception if the payment method is invalid
-                throw new IllegalArgumentException(errorMessage);
-            }
-        } else if (orderPaymentDTO.getPaymentMethod().equalsIgnoreCase("BANK_TRANSFER")) {
-            try {
-                Assert.notNull(orderPaymentDTO.getBankAccount(), "Bank account must not be null");
-                Assert.notNull(orderPaymentDTO.getBankName(), "Bank name must not be null");
-            } catch (IllegalArgumentException e) {
-                String errorMessage = "Validation failed for bank transfer payment: " + e.getMessage();
-
-                // Publish a message to the failed queue
-                messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                    new CustomException(errorMessage));
-                
-                // Throw an exception if the payment method is invalid
-                throw new IllegalArgumentException(errorMessage);
-            }
-        } else {
-            String errorMessage = "Invalid payment method: " + orderPaymentDTO.getPaymentMethod();
+    private final PaymentMetrics paymentMetrics;
 
-            // Publish a message to the failed queue
-            messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                new CustomException(errorMessage));
+    private final OrderPaymentValidator orderPaymentValidator;
 
-            // Throw an exception if the payment method is invalid
-            throw new IllegalArgumentException(errorMessage);
-        }
+    private final PaymentGatewayRegistry paymentGatewayRegistry;
 
-        // Check if the order exists
-        Order order = this.getOrderByID(orderPaymentDTO.getOrderId());
-        if (order == null) {
-            String errorMessage = "Order not found: " + orderPaymentDTO.getOrderId();
+    private final GatewayRateLimiter gatewayRateLimiter;
 
-            // Publish a message to the failed queue
-            messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                new CustomException(errorMessage));
+    private final SnowflakeIdGenerator idGenerator;
 
-            // Throw an exception if the order is not found
-            throw new IllegalArgumentException("Order not found: " + orderPaymentDTO.getOrderId());
-        }
+    public OrderPaymentServiceImpl(MessagePublisher messagePublisher, GatewayExecutor gatewayExecutor,
+        PaymentStatusService paymentStatusService, OrderPaymentRepository orderPaymentRepository,
+        TransactionTemplate transactionTemplate, PaymentMetrics paymentMetrics, OrderPaymentValidator orderPaymentValidator,
+        PaymentGatewayRegistry paymentGatewayRegistry, GatewayRateLimiter gatewayRateLimiter, SnowflakeIdGenerator idGenerator) {
+        this.messagePublisher = messagePublisher;
+        this.gatewayExecutor = gatewayExecutor;
+        this.paymentStatusService = paymentStatusService;
+        this.orderPaymentRepository = orderPaymentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.paymentMetrics = paymentMetrics;
+        this.orderPaymentValidator = orderPaymentValidator;
+        this.paymentGatewayRegistry = paymentGatewayRegistry;
+        this.gatewayRateLimiter = gatewayRateLimiter;
+        this.idGenerator = idGenerator;
+    }
 
-        // Check if the order payment status is PENDING_PAYMENT
-        if (!order.getPaymentStatus().equalsIgnoreCase("PENDING_PAYMENT")) {
-            String errorMessage = "Order payment status is not PENDING_PAYMENT: " + order.getPaymentStatus();
-            
+    private void validateOrderPayment(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        try {
+            orderPaymentValidator.validate(orderPaymentDTO);
+        } catch (IllegalArgumentException e) {
             // Publish a message to the failed queue
             messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                new CustomException(errorMessage));
+                new CustomException(e.getMessage()));
 
-            // Throw an exception if the payment status is not PENDING_PAYMENT
-            throw new IllegalArgumentException(errorMessage);
+            // Throw an exception if the order payment is invalid
+            throw e;
         }
+    }
 
-        // Check if the payment amount matches the order total
-        if (order.getOrderTotal().compareTo(orderPaymentDTO.getAmount()) != 0) {
-            String errorMessage = "Payment amount does not match order total: " + order.getOrderTotal() + " != " + orderPaymentDTO.getAmount();
-
-            // Publish a message to the failed queue
-            messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                new CustomException(errorMessage));
+    private PaymentResponseDTO processPayment(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        Assert.notNull(orderPaymentDTO, "OrderPaymentDTO must not be null");
 
-            // Throw an exception if the payment amount does not match the order total
-            throw new IllegalArgumentException(errorMessage);
+        // Call the gateway of the payment method under its concurrency limit and timeout
+        PaymentGateway paymentGateway = paymentGatewayRegistry.getGateway(orderPaymentDTO.getPaymentMethod());
+        if (paymentGateway == null) {
+            return null; // Invalid payment method
         }
 
-        // Additional validation checks can be added here
-
+        return paymentMetrics.timeGateway(paymentGateway.getPaymentMethod().name(), 
+            () -> gatewayExecutor.execute(paymentGateway, () -> paymentGateway.process(orderPaymentDTO)));
     }
 
-    private PaymentResponseDTO processPaymentWithCC(PaymentCCRequestDTO paymentCCRequestDTO) {
-        Assert.notNull(paymentCCRequestDTO, "PaymentCCRequestDTO must not be null");
-
-        // Call the credit card payment gateway API
-        try {
-            // Simulate processing the payment
-            Thread.sleep(2000); // Simulate a delay of 2 seconds
-
-            // For simplicity, we will generate a random transaction ID
-            String transactionId = "TXN" + System.currentTimeMillis();
-            String paymentStatus = "SUCCESS"; // Assume payment is successful
+    @Override
+    public OrderPayment createOrderPayment(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        Assert.notNull(orderPaymentDTO, "OrderPaymentDTO must not be null");
+        
+        // Validate request (check order exists, amount is valid, etc.)
+        this.validateOrderPayment(orderPaymentDTO);
 
-            // Check if the transaction ID is empty
-            // Payment status can be "SUCCESS" or "FAILED"; If failed, run scheduled job to retry payment
-            if (transactionId == null || transactionId.isEmpty()) {
-                paymentStatus = "FAILED";
-            }
+        // Wait a bounded time for a token of the gateway's rate limit; the caller is blocked on the gateway anyway
+        if (!gatewayRateLimiter.acquire(orderPaymentDTO.getPaymentMethod(), rateLimitMaxWait)) {
+            String errorMessage = "Payment processing failed for order " + orderPaymentDTO.getOrderId() + 
+                ": Rate limit of the " + orderPaymentDTO.getPaymentMethod() + " gateway exceeded";
 
-            return new PaymentResponseDTO(transactionId, paymentStatus);
-        } catch (InterruptedException e) {
             // Publish a message to the failed queue
             messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                new CustomException("Error processing credit card payment for order " + paymentCCRequestDTO.getOrderId() + ": " + e.getMessage()));
+                new CustomException(errorMessage));
 
-            // Return null to indicate failure
-            return null;
+            throw new GatewayUnavailableException(errorMessage);
         }
-    }
-
-    private PaymentResponseDTO processPaymentWithPaypal(PaymentPaypalRequestDTO paymentPaypalRequestDTO) {
-        Assert.notNull(paymentPaypalRequestDTO, "PaymentPaypalRequestDTO must not be null");
-
-        // Call the PayPal payment gateway API
-        try {
-            // Simulate processing the payment
-            Thread.sleep(2000); // Simulate a delay of 2 seconds
 
-            // For simplicity, we will generate a random transaction ID
-            String transactionId = "TXN" + System.currentTimeMillis();
-            String paymentStatus = "SUCCESS"; // Assume payment is successful
+        return this.processOrderPayment(orderPaymentDTO);
+    }
 
-            // Check if the transaction ID is empty
-            // Payment status can be "SUCCESS" or "FAILED"; If failed, run scheduled job to retry payment
-            if (transactionId == null || transactionId.isEmpty()) {
-                paymentStatus = "FAILED";
-            }
+    @Override
+    public void processOrderPaymentRequest(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        Assert.notNull(orderPaymentDTO, "OrderPaymentDTO must not be null");
 
-            return new PaymentResponseDTO(transactionId, paymentStatus);
-        } catch (InterruptedException e) {
-            // Publish a message to the failed queue
-            messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                new CustomException("Error processing PayPal payment for order " + paymentPaypalRequestDTO.getOrderId() + ": " + e.getMessage()));
+        // Validate request (check order exists, amount is valid, etc.)
+        this.validateOrderPayment(orderPaymentDTO);
 
-            // Return null to indicate failure
-            return null;
+        // Park the request instead of overrunning the gateway when its rate limit has no token left
+        if (!gatewayRateLimiter.tryAcquire(orderPaymentDTO.getPaymentMethod())) {
+            this.parkOrderPaymentRequest(orderPaymentDTO);
+            return;
         }
-    }
-
-    private PaymentResponseDTO processPaymentWithBank(PaymentBankRequestDTO paymentBankRequestDTO) {
-        Assert.notNull(paymentBankRequestDTO, "PaymentBankRequestDTO must not be null");
 
-        // Call the bank transfer payment gateway API
-        try {
-            // Simulate processing the payment
-            Thread.sleep(2000); // Simulate a delay of 2 seconds
-
-            // For simplicity, we will generate a random transaction ID
-            String transactionId = "TXN" + System.currentTimeMillis();
-            String paymentStatus = "SUCCESS"; // Assume payment is successful
+        this.processOrderPayment(orderPaymentDTO);
+    }
 
-            // Check if the transaction ID is empty
-            // Payment status can be "SUCCESS" or "FAILED"; If failed, run scheduled job to retry payment
-            if (transactionId == null || transactionId.isEmpty()) {
-                paymentStatus = "FAILED";
-            }
+    @Override
+    public void processParkedOrderPaymentRequest(CreateOrderPaymentRequestDTO orderPaymentDTO, Long parkedAt) {
+        Assert.notNull(orderPaymentDTO, "OrderPaymentDTO must not be null");
 
-            return new PaymentResponseDTO(transactionId, paymentStatus);
-        } catch (InterruptedException e) {
-            // Publish a message to the failed queue
-            messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
-                new CustomException("Error processing bank transfer payment for order " + paymentBankRequestDTO.getOrderId() + ": " + e.getMessage()));
+        // Validate request again, the order may have changed while the request was parked
+        this.validateOrderPayment(orderPaymentDTO);
 
-            // Return null to indicate failure
-            return null;
+        // Wait as long as it takes; the holding queue keeps the other parked requests in the broker meanwhile
+        if (!gatewayRateLimiter.acquireParked(orderPaymentDTO.getPaymentMethod(), parkedAt)) {
+            throw new IllegalStateException("Interrupted while waiting for a token of the " + 
+                orderPaymentDTO.getPaymentMethod() + " gateway");
         }
-    }
 
-    private PaymentResponseDTO processPayment(CreateOrderPaymentRequestDTO orderPaymentDTO) {
-        Assert.notNull(orderPaymentDTO, "OrderPaymentDTO must not be null");
+        this.processOrderPayment(orderPaymentDTO);
+    }
 
-        if (orderPaymentDTO.getPaymentMethod().equalsIgnoreCase("CREDIT_CARD")) {
-            return processPaymentWithCC(new PaymentCCRequestDTO(orderPaymentDTO.getOrderId(), 
-                orderPaymentDTO.getAmount(), 
-                orderPaymentDTO.getCurrency(),
-                orderPaymentDTO.getCardNumber(),
-                orderPaymentDTO.getCardExpiry(),
-                orderPaymentDTO.getCardCvv()));
-        } else if (orderPaymentDTO.getPaymentMethod().equalsIgnoreCase("PAYPAL")) {
-            return processPaymentWithPaypal(new PaymentPaypalRequestDTO(orderPaymentDTO.getOrderId(), 
-                orderPaymentDTO.getAmount(), 
-                orderPaymentDTO.getCurrency(),
-                orderPaymentDTO.getPaypalEmail()));
-        } else if (orderPaymentDTO.getPaymentMethod().equalsIgnoreCase("BANK_TRANSFER")) {
-            return processPaymentWithBank(new PaymentBankRequestDTO(orderPaymentDTO.getOrderId(), 
-                orderPaymentDTO.getAmount(), 
-                orderPaymentDTO.getCurrency(),
-                orderPaymentDTO.getBankAccount(),
-                orderPaymentDTO.getBankName()));
-        } else {
-            return null; // Invalid payment method
+    private void parkOrderPaymentRequest(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        // The payment handle and trace headers are already in the PublishContext, so the parked request keeps them
+        PublishContext.setHeader(PublishContext.PARKED_AT_HEADER, System.currentTimeMillis());
+        try {
+            messagePublisher.publish(paymentExchangeName, 
+                paymentRequestRoutingKey + ".holding." + orderPaymentDTO.getPaymentMethod().getKey(), orderPaymentDTO);
+        } finally {
+            PublishContext.removeHeader(PublishContext.PARKED_AT_HEADER);
         }
     }
 
-    @Override
-    public OrderPayment createOrderPayment(CreateOrderPaymentRequestDTO orderPaymentDTO) {
-        Assert.notNull(orderPaymentDTO, "OrderPaymentDTO must not be null");
-        
-        // Validate request (check order exists, amount is valid, etc.)
-        this.validateOrderPayment(orderPaymentDTO);
-        
+    private OrderPayment processOrderPayment(CreateOrderPaymentRequestDTO orderPaymentDTO) {
         // Call the payment gateway API and get the transaction details
         String paymentStatus = "FAILED"; // Default to FAILED
         String transactionId = "";
-        PaymentResponseDTO paymentResponse = this.processPayment(orderPaymentDTO);
+        PaymentResponseDTO paymentResponse;
+        try {
+            paymentResponse = this.processPayment(orderPaymentDTO);
+        } catch (IllegalStateException e) {
+            // The gateway is unavailable (circuit breaker open, bulkhead full or call timed out), or the call was interrupted
+            String errorMessage = "Payment processing failed for order " + orderPaymentDTO.getOrderId() + ": " + e.getMessage();
+
+            // Publish a message to the failed queue
+            messagePublisher.publish(paymentExchangeName, paymentFailedRoutingKey, 
+                new CustomException(errorMessage));
+
+            throw e;
+        }
 
         // Check if the payment response is null (indicating a failure)
         if (paymentResponse == null) {
@@ -382,34 +235,57 @@ public class OrderPaymentServiceImpl implements OrderPaymentService {
 
         // Create an OrderPayment entity
         OrderPayment orderPayment = new OrderPayment();
-        orderPayment.setId(Long.valueOf(System.currentTimeMillis())); // Simulate ID generation
+        orderPayment.setId(idGenerator.nextId());
         orderPayment.setOrderId(orderPaymentDTO.getOrderId());
         orderPayment.setAmount(orderPaymentDTO.getAmount());
         orderPayment.setCurrency(orderPaymentDTO.getCurrency());
-        orderPayment.setPaymentMethod(orderPaymentDTO.getPaymentMethod());
+        orderPayment.setPaymentMethod(orderPaymentDTO.getPaymentMethod().name());
         orderPayment.setPaymentStatus(paymentStatus);
 
-        if (orderPaymentDTO.getPaymentMethod().equalsIgnoreCase("CREDIT_CARD")) {
-            orderPayment.setCardNumber(orderPaymentDTO.getCardNumber());
-            orderPayment.setCardExpiry(orderPaymentDTO.getCardExpiry());
-            orderPayment.setCardCvv(orderPaymentDTO.getCardCvv());
-        } else if (orderPaymentDTO.getPaymentMethod().equalsIgnoreCase("PAYPAL")) {
-            orderPayment.setPaypalEmail(orderPaymentDTO.getPaypalEmail());
-        } else if (orderPaymentDTO.getPaymentMethod().equalsIgnoreCase("BANK_TRANSFER")) {
-            orderPayment.setBankAccount(orderPaymentDTO.getBankAccount());
-            orderPayment.setBankName(orderPaymentDTO.getBankName());
-        }
+        // Copy the details of the payment method (card, PayPal or bank account)
+        paymentGatewayRegistry.getGateway(orderPaymentDTO.getPaymentMethod())
+            .copyPaymentDetails(orderPaymentDTO, orderPayment);
 
         orderPayment.setTransactionId(transactionId);
         orderPayment.setCreatedAt(Instant.now());
         orderPayment.setUpdatedAt(Instant.now());
 
-        // Save the OrderPayment entity to the database
-        
-        // Publish the order payment event to RabbitMQ
-        messagePublisher.publish(paymentExchangeName, paymentSuccessRoutingKey, orderPayment);
+        // Save the OrderPayment entity and publish its event; outside OUTBOX mode the publish waits for the commit
+        transactionTemplate.executeWithoutResult(status -> {
+            orderPaymentRepository.save(orderPayment);
+            messagePublisher.publish(paymentExchangeName, paymentSuccessRoutingKey, orderPayment.getOrderId(), orderPayment);
+        });
 
         // For simplicity, we will return the OrderPayment object directly
         return orderPayment;
     }
+
+    @Override
+    public String submitOrderPayment(CreateOrderPaymentRequestDTO orderPaymentDTO) {
+        Assert.notNull(orderPaymentDTO, "OrderPaymentDTO must not be null");
+        Assert.notNull(orderPaymentDTO.getOrderId(), "Order ID must not be null");
+
+        // Register the payment as PENDING before it is enqueued, so the status is known as soon as the client polls
+        String paymentHandle = UUID.randomUUID().toString();
+        paymentStatusService.markPending(paymentHandle, orderPaymentDTO.getOrderId());
+
+        // The handle travels as a message header, so the listener processing the request can stamp it onto its events
+        PublishContext.setHeader(PublishContext.PAYMENT_HANDLE_HEADER, paymentHandle);
+        try {
+            messagePublisher.publish(paymentExchangeName, paymentRequestRoutingKey, orderPaymentDTO)
+                .whenComplete((result, e) -> {
+                    // In ASYNC and BATCH mode the publish only fails after this method has returned the handle
+                    if (e != null) {
+                        paymentStatusService.markFailed(paymentHandle, "Failed to enqueue payment request: " + e.getMessage());
+                    }
+                });
+        } catch (RuntimeException e) {
+            paymentStatusService.markFailed(paymentHandle, "Failed to enqueue payment request: " + e.getMessage());
+            throw e;
+        } finally {
+            PublishContext.removeHeader(PublishContext.PAYMENT_HANDLE_HEADER);
+        }
+
+        return paymentHandle;
+    }
 }
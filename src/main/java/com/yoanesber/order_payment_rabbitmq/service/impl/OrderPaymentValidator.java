@@ -0,0 +1,81 @@
+package com.yoanesber.order_payment_rabbitmq.service.impl;
+
+import java.math.BigDecimal;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.Order;
+import com.yoanesber.order_payment_rabbitmq.gateway.PaymentGateway;
+import com.yoanesber.order_payment_rabbitmq.gateway.PaymentGatewayRegistry;
+import com.yoanesber.order_payment_rabbitmq.repository.OrderRepository;
+
+/**
+ * OrderPaymentValidator checks an order payment request before it is processed: the common fields,
+ * the method-specific details through the PaymentGateway of the request's PaymentMethod, and the order it pays for,
+ * which must exist, still be pending payment and have a total equal to the payment amount.
+ * An invalid request fails with an IllegalArgumentException whose message OrderPaymentServiceImpl publishes to the failed queue.
+ */
+
+@Component
+public class OrderPaymentValidator {
+
+    private final OrderRepository orderRepository;
+
+    private final PaymentGatewayRegistry paymentGatewayRegistry;
+
+    public OrderPaymentValidator(OrderRepository orderRepository, PaymentGatewayRegistry paymentGatewayRegistry) {
+        this.orderRepository = orderRepository;
+        this.paymentGatewayRegistry = paymentGatewayRegistry;
+    }
+
+    public void validate(CreateOrderPaymentRequestDTO orderPaymentDTO) throws IllegalArgumentException {
+        try {
+            // Validate the order payment request
+            Assert.notNull(orderPaymentDTO, "OrderPaymentDTO must not be null");
+            Assert.notNull(orderPaymentDTO.getOrderId(), "Order ID must not be null");
+            Assert.notNull(orderPaymentDTO.getAmount(), "Amount must not be null");
+            Assert.isTrue(orderPaymentDTO.getAmount().compareTo(BigDecimal.ZERO) > 0, "Amount must be greater than zero");
+            Assert.notNull(orderPaymentDTO.getCurrency(), "Currency must not be null");
+            Assert.notNull(orderPaymentDTO.getPaymentMethod(), "Payment method must not be null");
+
+            // Additional validation checks can be added here
+
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Validation failed for order payment: " + e.getMessage());
+        }
+
+        // Look up the gateway of the payment method; a single EnumMap access
+        PaymentGateway paymentGateway = paymentGatewayRegistry.getGateway(orderPaymentDTO.getPaymentMethod());
+        if (paymentGateway == null) {
+            throw new IllegalArgumentException("Invalid payment method: " + orderPaymentDTO.getPaymentMethod());
+        }
+
+        try {
+            paymentGateway.validate(orderPaymentDTO);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Validation failed for " + orderPaymentDTO.getPaymentMethod().getLabel() +
+                " payment: " + e.getMessage());
+        }
+
+        // Check if the order exists
+        Order order = orderRepository.findById(orderPaymentDTO.getOrderId());
+        if (order == null) {
+            throw new IllegalArgumentException("Order not found: " + orderPaymentDTO.getOrderId());
+        }
+
+        // Check if the order payment status is PENDING_PAYMENT
+        if (!order.getPaymentStatus().equalsIgnoreCase("PENDING_PAYMENT")) {
+            throw new IllegalArgumentException("Order payment status is not PENDING_PAYMENT: " + order.getPaymentStatus());
+        }
+
+        // Check if the payment amount matches the order total
+        if (order.getOrderTotal().compareTo(orderPaymentDTO.getAmount()) != 0) {
+            throw new IllegalArgumentException("Payment amount does not match order total: " + order.getOrderTotal() +
+                " != " + orderPaymentDTO.getAmount());
+        }
+
+        // Additional validation checks can be added here
+
+    }
+}
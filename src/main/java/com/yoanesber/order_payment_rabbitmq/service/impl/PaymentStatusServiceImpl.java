@@ -0,0 +1,69 @@
+package com.yoanesber.order_payment_rabbitmq.service.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yoanesber.order_payment_rabbitmq.dto.OrderPaymentStatusDTO;
+import com.yoanesber.order_payment_rabbitmq.service.PaymentStatusService;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * PaymentStatusServiceImpl keeps the status of asynchronously submitted payments in memory.
+ * The store is bounded in size and entries expire a fixed time after their last update,
+ * so clients that never poll do not make it grow without limit.
+ * It is local to this instance; a status update consumed by another instance is not visible here.
+ */
+
+@Service
+public class PaymentStatusServiceImpl implements PaymentStatusService {
+
+    @Value("${order-payment.status-store.max-size:100000}")
+    private long maxSize;
+
+    @Value("${order-payment.status-store.expire-after-write:3600000}")
+    private long expireAfterWrite;
+
+    private Cache<String, OrderPaymentStatusDTO> statuses;
+
+    @PostConstruct
+    public void init() {
+        this.statuses = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMillis(expireAfterWrite))
+            .build();
+    }
+
+    @Override
+    public void markPending(String paymentHandle, String orderId) {
+        Assert.hasText(paymentHandle, "Payment handle must not be empty");
+        statuses.put(paymentHandle, new OrderPaymentStatusDTO(paymentHandle, orderId, "PENDING", null, null, Instant.now()));
+    }
+
+    @Override
+    public void markSucceeded(String paymentHandle, String orderId, String transactionId) {
+        Assert.hasText(paymentHandle, "Payment handle must not be empty");
+        statuses.put(paymentHandle, new OrderPaymentStatusDTO(paymentHandle, orderId, "SUCCESS", transactionId, null, Instant.now()));
+    }
+
+    @Override
+    public void markFailed(String paymentHandle, String message) {
+        Assert.hasText(paymentHandle, "Payment handle must not be empty");
+
+        // Keep the order ID of the pending entry, since failure events do not carry it
+        OrderPaymentStatusDTO current = statuses.getIfPresent(paymentHandle);
+        String orderId = current != null ? current.getOrderId() : null;
+        statuses.put(paymentHandle, new OrderPaymentStatusDTO(paymentHandle, orderId, "FAILED", null, message, Instant.now()));
+    }
+
+    @Override
+    public OrderPaymentStatusDTO getStatus(String paymentHandle) {
+        Assert.hasText(paymentHandle, "Payment handle must not be empty");
+        return statuses.getIfPresent(paymentHandle);
+    }
+}
@@ -0,0 +1,45 @@
+package com.yoanesber.order_payment_rabbitmq.tracing;
+
+import java.io.IOException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.yoanesber.order_payment_rabbitmq.publisher.PublishContext;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * RequestTracingFilter stamps the request start time and trace id into the PublishContext of the request thread,
+ * so every message published while handling the request carries them to its listener.
+ * An incoming W3C traceparent header is continued; otherwise a new trace is started.
+ * The trace id is returned to the client in the X-Trace-Id response header.
+ */
+
+@Component
+public class RequestTracingFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long requestStart = System.currentTimeMillis();
+
+        String traceId = TraceHeaders.traceIdOf(request.getHeader(TraceHeaders.TRACEPARENT_HEADER));
+        if (traceId == null) {
+            traceId = TraceHeaders.newTraceId();
+        }
+
+        PublishContext.setHeader(TraceHeaders.REQUEST_START_HEADER, requestStart);
+        PublishContext.setHeader(TraceHeaders.TRACE_ID_HEADER, traceId);
+        PublishContext.setHeader(TraceHeaders.TRACEPARENT_HEADER, TraceHeaders.newTraceparent(traceId));
+        response.setHeader("X-Trace-Id", traceId);
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            PublishContext.clear();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.yoanesber.order_payment_rabbitmq.tracing;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * TraceHeaders defines the AMQP headers that carry end-to-end latency and trace information
+ * from the HTTP request through every published message to the listener that consumes it.
+ * Timestamps are epoch milliseconds, so latencies measured across hosts include their clock skew.
+ */
+
+public final class TraceHeaders {
+
+    // Time the HTTP request reached the application
+    public static final String REQUEST_START_HEADER = "x-request-start";
+
+    // Time the message was handed to the publisher
+    public static final String PUBLISHED_AT_HEADER = "x-published-at";
+
+    // Trace id shared by the request and all messages it produces
+    public static final String TRACE_ID_HEADER = "x-trace-id";
+
+    // W3C Trace Context header, so traces join across the publish/consume hop
+    public static final String TRACEPARENT_HEADER = "traceparent";
+
+    private static final Pattern TRACEPARENT_PATTERN = Pattern.compile("^00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})$");
+
+    private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+
+    private TraceHeaders() {
+    }
+
+    /**
+     * Returns the trace id of a W3C traceparent value, or null if the value is missing or invalid.
+     */
+    public static String traceIdOf(String traceparent) {
+        if (traceparent == null) {
+            return null;
+        }
+
+        var matcher = TRACEPARENT_PATTERN.matcher(traceparent);
+        if (!matcher.matches() || INVALID_TRACE_ID.equals(matcher.group(1))) {
+            return null;
+        }
+        return matcher.group(1);
+    }
+
+    /**
+     * Returns a new random 32-hex-digit trace id.
+     */
+    public static String newTraceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return HexFormat.of().toHexDigits(random.nextLong()) + HexFormat.of().toHexDigits(random.nextLong());
+    }
+
+    /**
+     * Returns a sampled W3C traceparent value for the trace id with a new span id.
+     */
+    public static String newTraceparent(String traceId) {
+        return "00-" + traceId + "-" + HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextLong()) + "-01";
+    }
+}
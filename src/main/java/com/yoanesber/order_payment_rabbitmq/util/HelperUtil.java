@@ -2,18 +2,23 @@ package com.yoanesber.order_payment_rabbitmq.util;
 
 import java.io.IOException;
 import java.util.Map;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.yoanesber.order_payment_rabbitmq.converter.PayloadSerializer;
+import com.yoanesber.order_payment_rabbitmq.converter.WireFormat;
 
 /*
  * HelperUtil.java
  * This utility class provides methods to convert various objects to a Map<String, Object> representation.
+ * Message bodies can be read as JSON or, when their content type says so, as Smile.
+ * HelperUtil is static, so it uses a standalone PayloadSerializer with the defaults of JacksonConfig.
+ * Consumed events are read through the application's PayloadSerializer bean instead (see PaymentListener),
+ * which applies the spring.jackson.* and Blackbird settings.
  */
 
 public class HelperUtil {
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    
+    private static final PayloadSerializer payloadSerializer = PayloadSerializer.standalone(false);
+
     public static Map<String, Object> convertToMap(Object entity) throws IllegalArgumentException {
         if (entity == null) {
             throw new IllegalArgumentException("Entity cannot be null");
@@ -27,21 +32,26 @@ public class HelperUtil {
         if (entity instanceof Boolean) {
             throw new IllegalArgumentException("Entity cannot be a Boolean");
         }
-        
+
         try {
-            return objectMapper.convertValue(entity, new TypeReference<Map<String, Object>>() {});
+            return payloadSerializer.convertToMap(entity);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Failed to convert entity to Map", e);
         }
     }
 
     public static Map<String, Object> convertToMap(byte[] entity) throws IllegalArgumentException, IOException {
+        return convertToMap(entity, WireFormat.JSON.getContentType());
+    }
+
+    public static Map<String, Object> convertToMap(byte[] entity, String contentType) throws IllegalArgumentException, IOException {
         if (entity == null) {
             throw new IllegalArgumentException("Entity cannot be null");
         }
-        
+
+        // The serializer picks the decoder from the content type, so events published in either wire format can be read
         try {
-            return objectMapper.readValue(entity, new TypeReference<Map<String, Object>>() {});
+            return payloadSerializer.readMap(entity, contentType);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Failed to convert entity to Map", e);
         } catch (IOException e) {
@@ -53,13 +63,13 @@ public class HelperUtil {
         if (entity == null) {
             throw new IllegalArgumentException("Entity cannot be null");
         }
-        
+
         try {
-            return objectMapper.writeValueAsString(entity);
+            return payloadSerializer.writeAsString(entity);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Failed to convert entity to String", e);
         } catch (IOException e) {
             throw new IOException("Failed to convert entity to String", e);
         }
     }
-}
\ No newline at end of file
+}
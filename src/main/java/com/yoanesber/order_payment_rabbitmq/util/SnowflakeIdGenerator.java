@@ -0,0 +1,92 @@
+package com.yoanesber.order_payment_rabbitmq.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * SnowflakeIdGenerator generates unique, roughly time-ordered 64-bit ids for order payments and transactions.
+ * An id is made of 41 bits of milliseconds since 2025-01-01T00:00:00Z, a 10-bit node id and a 12-bit sequence,
+ * so every instance must be given its own node id (0-1023) with order-payment.id.node-id.
+ * The last timestamp and sequence are packed into a single AtomicLong, so nextId() is lock-free and allocation-free.
+ * When the clock moves backwards, or more than 4096 ids are taken within one millisecond, the generator keeps counting
+ * on its own logical clock instead of reusing ids. If that logical clock runs ahead of the system clock by more than
+ * order-payment.id.max-clock-skew milliseconds, nextId() throws an IllegalStateException rather than drift further.
+ */
+
+@Component
+public class SnowflakeIdGenerator {
+
+    // 2025-01-01T00:00:00Z, which leaves room for about 69 years of timestamps
+    private static final long EPOCH = 1735689600000L;
+
+    private static final int NODE_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    @Value("${order-payment.id.node-id:0}")
+    private long nodeId;
+
+    @Value("${order-payment.id.max-clock-skew:5000}")
+    private long maxClockSkew;
+
+    // The timestamp of the last id, shifted left by the sequence bits, plus its sequence
+    private final AtomicLong lastState = new AtomicLong();
+
+    // Source of epoch milliseconds
+    private final LongSupplier clock;
+
+    private long nodeBits;
+
+    public SnowflakeIdGenerator() {
+        this(System::currentTimeMillis);
+    }
+
+    // Package-private, so SnowflakeIdGeneratorTest can move the clock backwards
+    SnowflakeIdGenerator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.isTrue(nodeId >= 0 && nodeId <= MAX_NODE_ID, "Node id must be between 0 and " + MAX_NODE_ID);
+        Assert.isTrue(maxClockSkew >= 0, "Max clock skew must not be negative");
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+    }
+
+    /**
+     * Returns the next id of this node.
+     *
+     * @return A positive id, unique across all nodes with distinct node ids.
+     * @throws IllegalStateException If the system clock is behind the last issued id by more than the max clock skew.
+     */
+    public long nextId() {
+        for (;;) {
+            long last = lastState.get();
+            long timestamp = clock.getAsLong() - EPOCH;
+            long next = timestamp << SEQUENCE_BITS;
+
+            if (next <= last) {
+                // Same millisecond, a clock that went backwards, or an exhausted sequence: continue from the last id.
+                // Overflowing the sequence carries into the timestamp bits, which borrows the next millisecond.
+                long skew = (last >>> SEQUENCE_BITS) - timestamp;
+                if (skew > maxClockSkew) {
+                    throw new IllegalStateException("Clock is " + skew + " ms behind the last generated id");
+                }
+                next = last + 1;
+            }
+
+            if (lastState.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+-- Local store for order payments and the transactional outbox of their events.
+-- Applied automatically to an embedded (in-memory) H2 database; set spring.sql.init.mode=always for a file-backed one.
+
+CREATE TABLE IF NOT EXISTS order_payment (
+    id              BIGINT         PRIMARY KEY,
+    order_id        VARCHAR(64)    NOT NULL,
+    amount          DECIMAL(19, 2) NOT NULL,
+    currency        VARCHAR(3)     NOT NULL,
+    payment_method  VARCHAR(32)    NOT NULL,
+    payment_status  VARCHAR(16)    NOT NULL,
+    card_number     VARCHAR(32),
+    card_expiry     VARCHAR(8),
+    paypal_email    VARCHAR(255),
+    bank_account    VARCHAR(64),
+    bank_name       VARCHAR(255),
+    transaction_id  VARCHAR(64),
+    retry_count     INT            NOT NULL,
+    created_at      TIMESTAMP      NOT NULL,
+    updated_at      TIMESTAMP      NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_payment_order_id ON order_payment (order_id);
+
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id              BIGINT         AUTO_INCREMENT PRIMARY KEY,
+    exchange_name   VARCHAR(255)   NOT NULL,
+    routing_key     VARCHAR(255)   NOT NULL,
+    content_type    VARCHAR(255),
+    headers         CLOB,
+    payload         BLOB           NOT NULL,
+    created_at      TIMESTAMP      NOT NULL,
+    sent_at         TIMESTAMP,
+    attempt_count   INT            DEFAULT 0 NOT NULL,
+    next_attempt_at TIMESTAMP      NOT NULL,
+    failed_at       TIMESTAMP,
+    last_error      VARCHAR(1024)
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_event_pending ON outbox_event (sent_at, failed_at, next_attempt_at);
@@ -0,0 +1,77 @@
+package com.yoanesber.order_payment_rabbitmq.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GatewayExecutionBenchmark compares payment throughput of the blocking model against virtual threads.
+ * The "platform" model mirrors Tomcat's default 200-thread pool, where every in-flight payment holds
+ * a platform thread through the gateway sleep; the "virtual" model gives every payment its own virtual thread.
+ * Each invocation pushes a burst of concurrent payments through a simulated gateway and waits for all of them.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class GatewayExecutionBenchmark {
+
+    private static final int CONCURRENT_PAYMENTS = 2000;
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    private String model;
+
+    @Param({"50"})
+    private long gatewayLatencyMillis;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        executor = "virtual".equals(model)
+            ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_PAYMENTS)
+    public void processPaymentBurst() {
+        CompletableFuture<?>[] payments = new CompletableFuture<?>[CONCURRENT_PAYMENTS];
+        for (int i = 0; i < CONCURRENT_PAYMENTS; i++) {
+            payments[i] = CompletableFuture.runAsync(this::callGateway, executor);
+        }
+        CompletableFuture.allOf(payments).join();
+    }
+
+    private void callGateway() {
+        try {
+            Thread.sleep(gatewayLatencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
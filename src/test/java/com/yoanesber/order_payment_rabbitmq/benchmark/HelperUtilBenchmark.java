@@ -0,0 +1,72 @@
+package com.yoanesber.order_payment_rabbitmq.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.MessageProperties;
+
+import com.yoanesber.order_payment_rabbitmq.converter.PayloadSerializer;
+import com.yoanesber.order_payment_rabbitmq.dto.PaymentEventSummaryDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.util.HelperUtil;
+
+/**
+ * HelperUtilBenchmark compares HelperUtil.convertToMap(byte[]), which PaymentListener used to run on every message,
+ * with the reads PaymentListener runs now: the cached typed reader (PayloadSerializer.read) and the partial-field
+ * reader (PayloadSerializer.readSummary), with and without the Blackbird module.
+ * The serializer is built like the application's bean, and the payload is the JSON of an OrderPayment success event
+ * as published by MessagePublisher.
+ * Run with -prof gc to compare the allocation per read, e.g. make benchmark BENCH="HelperUtil -prof gc".
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HelperUtilBenchmark {
+
+    @Param({"false", "true"})
+    private boolean blackbirdEnabled;
+
+    private PayloadSerializer payloadSerializer;
+
+    private final byte[] orderPaymentJson = ("{\"id\":1744814928936,\"orderId\":\"ORD123456789\",\"amount\":199.99," +
+        "\"currency\":\"USD\",\"paymentMethod\":\"CREDIT_CARD\",\"paymentStatus\":\"SUCCESS\"," +
+        "\"cardNumber\":\"**** **** **** 3456\",\"cardExpiry\":\"31/12\",\"paypalEmail\":null," +
+        "\"bankAccount\":null,\"bankName\":null,\"transactionId\":\"TXN1744814928936\",\"retryCount\":0," +
+        "\"createdAt\":1.7448149289367597E9,\"updatedAt\":1.7448149289367597E9}").getBytes(StandardCharsets.UTF_8);
+
+    @Setup
+    public void setUp() {
+        payloadSerializer = PayloadSerializer.standalone(blackbirdEnabled);
+    }
+
+    @Benchmark
+    public Map<String, Object> convertToMap() throws IOException {
+        return HelperUtil.convertToMap(orderPaymentJson);
+    }
+
+    @Benchmark
+    public OrderPayment readValue() throws IOException {
+        return payloadSerializer.read(orderPaymentJson, MessageProperties.CONTENT_TYPE_JSON, OrderPayment.class);
+    }
+
+    @Benchmark
+    public PaymentEventSummaryDTO readSummary() throws IOException {
+        return payloadSerializer.readSummary(orderPaymentJson, MessageProperties.CONTENT_TYPE_JSON);
+    }
+}
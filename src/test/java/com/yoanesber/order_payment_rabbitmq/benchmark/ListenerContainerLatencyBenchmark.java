@@ -0,0 +1,116 @@
+package com.yoanesber.order_payment_rabbitmq.benchmark;
+
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.retry.RejectAndDontRequeueRecoverer;
+
+/**
+ * ListenerContainerLatencyBenchmark compares the consume latency of SimpleMessageListenerContainer
+ * against DirectMessageListenerContainer.
+ * Each invocation publishes one message and waits until the listener receives it, so the sampled time is
+ * the publish-to-listener latency; JMH reports its p50/p90/p99 percentiles.
+ * The listener is wrapped in the same stateless retry advice as the application's listeners, and consumes from
+ * an exclusive, auto-delete queue declared for the run, so the application's queues are never touched.
+ * It needs a running RabbitMQ broker. The connection is configured with -Drabbitmq.host, -Drabbitmq.port,
+ * -Drabbitmq.virtual-host and the required -Drabbitmq.username and -Drabbitmq.password.
+ */
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ListenerContainerLatencyBenchmark {
+
+    @Param({"simple", "direct"})
+    private String containerType;
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_INTERVAL = 5000L;
+    private static final double MULTIPLIER = 1.0;
+    private static final long MAX_INTERVAL = 10000L;
+
+    private String queueName;
+
+    private final BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+
+    private CachingConnectionFactory connectionFactory;
+
+    private RabbitTemplate rabbitTemplate;
+
+    private AbstractMessageListenerContainer container;
+
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        connectionFactory = new CachingConnectionFactory(System.getProperty("rabbitmq.host", "localhost"),
+            Integer.getInteger("rabbitmq.port", 5672));
+        connectionFactory.setUsername(Objects.requireNonNull(System.getProperty("rabbitmq.username"),
+            "Set the broker user with -Drabbitmq.username"));
+        connectionFactory.setPassword(Objects.requireNonNull(System.getProperty("rabbitmq.password"),
+            "Set the broker password with -Drabbitmq.password"));
+        connectionFactory.setVirtualHost(System.getProperty("rabbitmq.virtual-host", "/"));
+
+        rabbitTemplate = new RabbitTemplate(connectionFactory);
+
+        // A queue of its own for this run; the broker deletes it when the benchmark's connection closes
+        queueName = new RabbitAdmin(connectionFactory).declareQueue(new AnonymousQueue());
+
+        container = "direct".equals(containerType)
+            ? new DirectMessageListenerContainer(connectionFactory)
+            : new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueueNames(queueName);
+        container.setMessageListener(received::add);
+
+        // The same advice as RetryConfig in in-container mode, so its interception cost is part of the latency
+        container.setAdviceChain(RetryInterceptorBuilder.stateless()
+            .maxAttempts(MAX_ATTEMPTS)
+            .backOffOptions(INITIAL_INTERVAL, MULTIPLIER, MAX_INTERVAL)
+            .recoverer(new RejectAndDontRequeueRecoverer())
+            .build());
+        container.start();
+
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        message = new Message("{\"orderId\":\"ORD123456789\",\"paymentStatus\":\"SUCCESS\"}".getBytes(), messageProperties);
+    }
+
+    @TearDown
+    public void tearDown() {
+        container.stop();
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public Message publishAndConsume() throws InterruptedException {
+        // Publish through the default exchange straight to the queue and wait for the listener to receive it
+        rabbitTemplate.send("", queueName, message);
+        return received.take();
+    }
+}
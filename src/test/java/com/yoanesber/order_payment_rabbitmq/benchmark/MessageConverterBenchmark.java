@@ -0,0 +1,93 @@
+package com.yoanesber.order_payment_rabbitmq.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yoanesber.order_payment_rabbitmq.config.MessageConverterConfig;
+import com.yoanesber.order_payment_rabbitmq.converter.PayloadSerializer;
+import com.yoanesber.order_payment_rabbitmq.entity.CustomException;
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+
+/**
+ * MessageConverterBenchmark measures the payment message converter used by RabbitTemplate and the batch listeners,
+ * converting OrderPayment and CustomException events to AMQP messages and back, in the JSON and the Smile wire format,
+ * with and without the Blackbird module.
+ * Run with -prof gc to see the allocation per conversion, e.g. make benchmark BENCH="MessageConverter -prof gc".
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageConverterBenchmark {
+
+    @Param({"json", "smile"})
+    private String wireFormat;
+
+    @Param({"false", "true"})
+    private boolean blackbirdEnabled;
+
+    private MessageConverter converter;
+
+    private OrderPayment orderPayment;
+
+    private CustomException customException;
+
+    private Message orderPaymentMessage;
+
+    private Message customExceptionMessage;
+
+    @Setup
+    public void setUp() {
+        // The converter trusts the entity package the same way for the batch listeners, so fromMessage returns typed events
+        MessageConverterConfig messageConverterConfig = new MessageConverterConfig();
+        ReflectionTestUtils.setField(messageConverterConfig, "wireFormat", wireFormat);
+        converter = messageConverterConfig.paymentMessageConverter(PayloadSerializer.standalone(blackbirdEnabled));
+
+        orderPayment = new OrderPayment(1744814928936L, "ORD123456789", new BigDecimal("199.99"), "USD", "CREDIT_CARD",
+            "SUCCESS", "**** **** **** 3456", "31/12", null, null, null, "TXN1744814928936", 0,
+            Instant.now(), Instant.now());
+        customException = new CustomException("Payment processing failed for order ORD123456789: Payment status is FAILED");
+
+        orderPaymentMessage = converter.toMessage(orderPayment, new MessageProperties());
+        customExceptionMessage = converter.toMessage(customException, new MessageProperties());
+    }
+
+    @Benchmark
+    public Message orderPaymentToMessage() {
+        return converter.toMessage(orderPayment, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object orderPaymentFromMessage() {
+        return converter.fromMessage(orderPaymentMessage);
+    }
+
+    @Benchmark
+    public Message customExceptionToMessage() {
+        return converter.toMessage(customException, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object customExceptionFromMessage() {
+        return converter.fromMessage(customExceptionMessage);
+    }
+}
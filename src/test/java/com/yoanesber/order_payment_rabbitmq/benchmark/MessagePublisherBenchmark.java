@@ -0,0 +1,93 @@
+package com.yoanesber.order_payment_rabbitmq.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yoanesber.order_payment_rabbitmq.entity.OrderPayment;
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+import com.yoanesber.order_payment_rabbitmq.publisher.ConfirmTrackingPublisher;
+import com.yoanesber.order_payment_rabbitmq.publisher.MessagePublisher;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * MessagePublisherBenchmark measures MessagePublisher.publish without a broker.
+ * The RabbitTemplate is stubbed so that send() returns immediately and acks the publisher confirm at once,
+ * which leaves the cost of conversion, header stamping, retry and confirm tracking in the measurement.
+ * The application loggers are raised to WARN, so console output does not dominate the result.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessagePublisherBenchmark {
+
+    @Param({"blocking", "async"})
+    private String mode;
+
+    private MessagePublisher messagePublisher;
+
+    private OrderPayment orderPayment;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger("com.yoanesber")).setLevel(Level.WARN);
+
+        RabbitTemplate rabbitTemplate = new StubRabbitTemplate();
+        rabbitTemplate.setMessageConverter(new Jackson2JsonMessageConverter());
+
+        ConfirmTrackingPublisher confirmTrackingPublisher = new ConfirmTrackingPublisher(rabbitTemplate);
+        ReflectionTestUtils.setField(confirmTrackingPublisher, "maxInFlight", 1000);
+        ReflectionTestUtils.setField(confirmTrackingPublisher, "inFlightAcquireTimeout", 100L);
+        ReflectionTestUtils.setField(confirmTrackingPublisher, "confirmTimeout", 5000L);
+        ReflectionTestUtils.setField(confirmTrackingPublisher, "maxAttempts", 3);
+        confirmTrackingPublisher.init();
+
+        messagePublisher = new MessagePublisher(rabbitTemplate, new RetryTemplate(), confirmTrackingPublisher, null, null,
+            new PaymentMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(messagePublisher, "mode", mode);
+        messagePublisher.init();
+
+        orderPayment = new OrderPayment(1744814928936L, "ORD123456789", new BigDecimal("199.99"), "USD", "CREDIT_CARD",
+            "SUCCESS", "**** **** **** 3456", "31/12", null, null, null, "TXN1744814928936", 0,
+            Instant.now(), Instant.now());
+    }
+
+    @Benchmark
+    public void publish() {
+        messagePublisher.publish("order.payment.exchange", "order.payment.success", orderPayment);
+    }
+
+    private static final class StubRabbitTemplate extends RabbitTemplate {
+        @Override
+        public void send(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+            if (correlationData != null) {
+                correlationData.getFuture().complete(new CorrelationData.Confirm(true, null));
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.yoanesber.order_payment_rabbitmq.benchmark;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yoanesber.order_payment_rabbitmq.dto.CreateOrderPaymentRequestDTO;
+import com.yoanesber.order_payment_rabbitmq.entity.PaymentMethod;
+import com.yoanesber.order_payment_rabbitmq.gateway.PaymentGatewayRegistry;
+import com.yoanesber.order_payment_rabbitmq.gateway.impl.BankTransferPaymentGateway;
+import com.yoanesber.order_payment_rabbitmq.gateway.impl.CreditCardPaymentGateway;
+import com.yoanesber.order_payment_rabbitmq.gateway.impl.PaypalPaymentGateway;
+import com.yoanesber.order_payment_rabbitmq.repository.impl.OrderRepositoryImpl;
+import com.yoanesber.order_payment_rabbitmq.service.impl.OrderPaymentValidator;
+import com.yoanesber.order_payment_rabbitmq.util.SnowflakeIdGenerator;
+
+/**
+ * OrderPaymentValidationBenchmark measures OrderPaymentValidator, which OrderPaymentServiceImpl runs on every payment,
+ * for a valid credit card payment, including the order lookup it performs against the uncached backing store.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderPaymentValidationBenchmark {
+
+    private OrderPaymentValidator orderPaymentValidator;
+
+    private CreateOrderPaymentRequestDTO orderPaymentDTO;
+
+    @Setup
+    public void setUp() {
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator();
+        orderPaymentValidator = new OrderPaymentValidator(new OrderRepositoryImpl(),
+            new PaymentGatewayRegistry(List.of(new CreditCardPaymentGateway(idGenerator), new PaypalPaymentGateway(idGenerator),
+                new BankTransferPaymentGateway(idGenerator))));
+        orderPaymentDTO = new CreateOrderPaymentRequestDTO("ORD123456789", new BigDecimal("199.99"), "USD", PaymentMethod.CREDIT_CARD,
+            "1234 5678 9012 3456", "31/12", "123", null, null, null);
+    }
+
+    @Benchmark
+    public CreateOrderPaymentRequestDTO validateOrderPayment() {
+        orderPaymentValidator.validate(orderPaymentDTO);
+        return orderPaymentDTO;
+    }
+}
@@ -0,0 +1,54 @@
+package com.yoanesber.order_payment_rabbitmq.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yoanesber.order_payment_rabbitmq.util.SnowflakeIdGenerator;
+
+/**
+ * SnowflakeIdGeneratorBenchmark measures SnowflakeIdGenerator.nextId() with a single thread and with
+ * 8 threads sharing one generator, which shows the cost of CAS contention on its packed timestamp and sequence.
+ * Run with -prof gc to confirm that nextId() does not allocate.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private SnowflakeIdGenerator idGenerator;
+
+    @Setup
+    public void setUp() {
+        idGenerator = new SnowflakeIdGenerator();
+        ReflectionTestUtils.setField(idGenerator, "nodeId", 1L);
+        ReflectionTestUtils.setField(idGenerator, "maxClockSkew", 5000L);
+        idGenerator.init();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextIdUncontended() {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long nextIdContended() {
+        return idGenerator.nextId();
+    }
+}
@@ -0,0 +1,83 @@
+package com.yoanesber.order_payment_rabbitmq.broker;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.qpid.server.SystemLauncher;
+import org.apache.qpid.server.model.SystemConfig;
+
+/**
+ * EmbeddedAmqpBroker runs Qpid Broker-J in-VM as a stand-in for RabbitMQ in tests and load tests.
+ * It speaks AMQP 0-9-1 on a free local port with an in-memory virtual host "order-payment" (vhost /order-payment),
+ * and the application declares its exchanges, queues and bindings from RabbitMQConfig on startup as usual.
+ * RabbitMQ-specific queue arguments (dead-lettering, x-message-ttl delay queues, single-active-consumer)
+ * are not RabbitMQ semantics here, so behavior that depends on them still has to be checked against RabbitMQ.
+ * The broker is started once per JVM and stopped on shutdown.
+ */
+
+public final class EmbeddedAmqpBroker {
+
+    public static final String USERNAME = "spring_user";
+
+    public static final String PASSWORD = "P@ssw0rd";
+
+    private static SystemLauncher systemLauncher;
+
+    private static int port;
+
+    private EmbeddedAmqpBroker() {
+    }
+
+    /**
+     * Starts the broker unless it is already running.
+     *
+     * @return The AMQP port the broker is listening on.
+     */
+    public static synchronized int start() {
+        if (systemLauncher != null) {
+            return port;
+        }
+
+        URL initialConfig = EmbeddedAmqpBroker.class.getClassLoader().getResource("qpid-embedded-config.json");
+        if (initialConfig == null) {
+            throw new IllegalStateException("qpid-embedded-config.json not found on the test classpath");
+        }
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("No free port for the embedded broker", e);
+        }
+
+        Map<String, String> context = new HashMap<>();
+        context.put("qpid.amqp_port", String.valueOf(port));
+        context.put("qpid.user.name", USERNAME);
+        context.put("qpid.user.password", PASSWORD);
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(SystemConfig.TYPE, "Memory");
+        attributes.put(SystemConfig.INITIAL_CONFIGURATION_LOCATION, initialConfig.toExternalForm());
+        attributes.put(SystemConfig.STARTUP_LOGGED_TO_SYSTEM_OUT, false);
+        attributes.put(SystemConfig.CONTEXT, context);
+
+        SystemLauncher launcher = new SystemLauncher();
+        try {
+            launcher.startup(attributes);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to start the embedded broker", e);
+        }
+
+        systemLauncher = launcher;
+        Runtime.getRuntime().addShutdownHook(new Thread(EmbeddedAmqpBroker::stop, "embedded-broker-shutdown"));
+        return port;
+    }
+
+    public static synchronized void stop() {
+        if (systemLauncher != null) {
+            systemLauncher.shutdown();
+            systemLauncher = null;
+        }
+    }
+}
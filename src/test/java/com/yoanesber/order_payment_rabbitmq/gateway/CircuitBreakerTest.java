@@ -0,0 +1,153 @@
+package com.yoanesber.order_payment_rabbitmq.gateway;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+    @Test
+    void staysClosedUntilMinimumCallsAreRecorded() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 10, 4, 50, 60000, 2);
+
+        recordFailure(circuitBreaker);
+        recordFailure(circuitBreaker);
+        recordFailure(circuitBreaker);
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void staysClosedBelowFailureRateThreshold() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 10, 4, 50, 60000, 2);
+
+        recordSuccess(circuitBreaker);
+        recordSuccess(circuitBreaker);
+        recordSuccess(circuitBreaker);
+        recordFailure(circuitBreaker);
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void opensAndRejectsCallsOnceFailureRateReachesThreshold() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 10, 4, 50, 60000, 2);
+
+        recordSuccess(circuitBreaker);
+        recordSuccess(circuitBreaker);
+        recordFailure(circuitBreaker);
+        recordFailure(circuitBreaker);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertNull(circuitBreaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void onlyCountsOutcomesWithinTheWindow() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 4, 40, 60000, 2);
+
+        recordFailure(circuitBreaker);
+        recordSuccess(circuitBreaker);
+        recordSuccess(circuitBreaker);
+        recordSuccess(circuitBreaker);
+
+        // The first failure drops out of the window, so this failure is 1 of 4 (25%), not 2 of 5 (40%)
+        recordFailure(circuitBreaker);
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void becomesHalfOpenAfterOpenDurationAndClosesWhenAllProbesSucceed() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 1, 50, 0, 2);
+        recordFailure(circuitBreaker);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // Only halfOpenProbes calls are let through while HALF_OPEN
+        CircuitBreaker.Permission firstProbe = circuitBreaker.tryAcquirePermission();
+        assertNotNull(firstProbe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        CircuitBreaker.Permission secondProbe = circuitBreaker.tryAcquirePermission();
+        assertNotNull(secondProbe);
+        assertNull(circuitBreaker.tryAcquirePermission());
+
+        circuitBreaker.onSuccess(firstProbe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.onSuccess(secondProbe);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        // The window starts clean, so a single success after closing does not count the old failure
+        recordSuccess(circuitBreaker);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void reopensWhenAProbeFails() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 1, 50, 0, 2);
+        recordFailure(circuitBreaker);
+
+        CircuitBreaker.Permission probe = circuitBreaker.tryAcquirePermission();
+        assertNotNull(probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        circuitBreaker.onFailure(probe);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void staysOpenUntilOpenDurationHasPassed() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 1, 50, 60000, 1);
+        recordFailure(circuitBreaker);
+
+        assertNull(circuitBreaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void releasedPermissionFreesAProbeSlot() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 1, 50, 0, 1);
+        recordFailure(circuitBreaker);
+
+        CircuitBreaker.Permission probe = circuitBreaker.tryAcquirePermission();
+        assertNotNull(probe);
+        assertNull(circuitBreaker.tryAcquirePermission());
+
+        circuitBreaker.releasePermission(probe);
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void ignoresOutcomesOfCallsLetThroughBeforeTheBreakerOpened() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 1, 50, 0, 1);
+        CircuitBreaker.Permission closedCall = circuitBreaker.tryAcquirePermission();
+        recordFailure(circuitBreaker);
+
+        CircuitBreaker.Permission probe = circuitBreaker.tryAcquirePermission();
+        assertNotNull(probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        // The call admitted while CLOSED neither closes the breaker nor frees the probe slot
+        circuitBreaker.onSuccess(closedCall);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertNull(circuitBreaker.tryAcquirePermission());
+
+        circuitBreaker.onFailure(closedCall);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        circuitBreaker.onSuccess(probe);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    private static void recordSuccess(CircuitBreaker circuitBreaker) {
+        circuitBreaker.onSuccess(circuitBreaker.tryAcquirePermission());
+    }
+
+    private static void recordFailure(CircuitBreaker circuitBreaker) {
+        circuitBreaker.onFailure(circuitBreaker.tryAcquirePermission());
+    }
+}
@@ -0,0 +1,79 @@
+package com.yoanesber.order_payment_rabbitmq.gateway;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    private final AtomicLong nanoTime = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void allowsABurstUpToCapacity() {
+        TokenBucket tokenBucket = new TokenBucket(10, 3, nanoTime::get);
+
+        assertTrue(tokenBucket.tryConsume());
+        assertTrue(tokenBucket.tryConsume());
+        assertTrue(tokenBucket.tryConsume());
+        assertFalse(tokenBucket.tryConsume());
+    }
+
+    @Test
+    void refillsAtPermitsPerSecond() {
+        TokenBucket tokenBucket = new TokenBucket(10, 3, nanoTime::get);
+        drain(tokenBucket);
+
+        // 10 permits per second is one token every 100 ms
+        this.advance(50);
+        assertFalse(tokenBucket.tryConsume());
+
+        this.advance(60);
+        assertTrue(tokenBucket.tryConsume());
+        assertFalse(tokenBucket.tryConsume());
+    }
+
+    @Test
+    void reportsTheTimeUntilTheNextToken() {
+        TokenBucket tokenBucket = new TokenBucket(10, 1, nanoTime::get);
+        assertEquals(0, tokenBucket.nanosUntilNextToken());
+
+        drain(tokenBucket);
+        this.advance(30);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(70), tokenBucket.nanosUntilNextToken(), TimeUnit.MICROSECONDS.toNanos(1));
+    }
+
+    @Test
+    void neverRefillsBeyondTheBurst() {
+        TokenBucket tokenBucket = new TokenBucket(10, 3, nanoTime::get);
+        drain(tokenBucket);
+
+        this.advance(60_000);
+
+        assertEquals(3, tokenBucket.getAvailableTokens());
+        drain(tokenBucket);
+        assertFalse(tokenBucket.tryConsume());
+    }
+
+    @Test
+    void treatsABurstBelowOneAsOne() {
+        TokenBucket tokenBucket = new TokenBucket(10, 0, nanoTime::get);
+
+        assertTrue(tokenBucket.tryConsume());
+        assertFalse(tokenBucket.tryConsume());
+    }
+
+    private void advance(long millis) {
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static void drain(TokenBucket tokenBucket) {
+        while (tokenBucket.tryConsume()) {
+            // Take every available token
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.yoanesber.order_payment_rabbitmq.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.yoanesber.order_payment_rabbitmq.broker.EmbeddedAmqpBroker;
+
+/**
+ * OrderPaymentLoadTest drives OrderPaymentController at a fixed request rate against the embedded broker
+ * and reports the achieved throughput and the latency percentiles of the HTTP calls.
+ * Requests are sent on schedule whether or not earlier ones have completed, so a slow server shows up as
+ * higher latency instead of a lower request rate (no coordinated omission).
+ * It only runs when -Dloadtest=true is set, e.g. through make load-test, and is configured with:
+ * -Dloadtest.rate (requests per second, default 100), -Dloadtest.duration (seconds, default 30),
+ * -Dloadtest.endpoint (sync or async, default sync) and -Dloadtest.warmup (seconds, default 5).
+ */
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("embedded-broker")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class OrderPaymentLoadTest {
+
+    private static final String REQUEST_BODY = "{\"orderId\":\"ORD123456789\",\"amount\":199.99,\"currency\":\"USD\"," +
+        "\"paymentMethod\":\"CREDIT_CARD\",\"cardNumber\":\"1234 5678 9012 3456\",\"cardExpiry\":\"31/12\",\"cardCvv\":\"123\"}";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @LocalServerPort
+    private int serverPort;
+
+    @DynamicPropertySource
+    static void brokerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.rabbitmq.port", EmbeddedAmqpBroker::start);
+    }
+
+    @Test
+    void driveOrderPaymentController() throws Exception {
+        int rate = Integer.getInteger("loadtest.rate", 100);
+        int durationSeconds = Integer.getInteger("loadtest.duration", 30);
+        int warmupSeconds = Integer.getInteger("loadtest.warmup", 5);
+        String endpoint = System.getProperty("loadtest.endpoint", "sync");
+
+        URI uri = URI.create("http://localhost:" + serverPort + "/api/v1/order-payment" + ("async".equals(endpoint) ? "/async" : ""));
+        HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+        if (warmupSeconds > 0) {
+            this.run(httpClient, uri, rate, warmupSeconds);
+        }
+
+        long startNanos = System.nanoTime();
+        Result result = this.run(httpClient, uri, rate, durationSeconds);
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+
+        long[] latencies = result.latencies();
+        Arrays.sort(latencies);
+        logger.info("Load test {} at {} req/s for {} s: {} requests, {} errors, throughput {} req/s",
+            uri, rate, durationSeconds, latencies.length, result.errors(), String.format("%.1f", latencies.length / elapsedSeconds));
+        logger.info("Latency (ms): p50={} p90={} p99={} p99.9={} max={}",
+            this.percentile(latencies, 50), this.percentile(latencies, 90), this.percentile(latencies, 99),
+            this.percentile(latencies, 99.9), latencies.length > 0 ? latencies[latencies.length - 1] / 1_000_000.0 : 0);
+    }
+
+    private Result run(HttpClient httpClient, URI uri, int rate, int durationSeconds) throws InterruptedException {
+        int totalRequests = rate * durationSeconds;
+        AtomicLongArray latencies = new AtomicLongArray(totalRequests);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        List<CompletableFuture<?>> requests = new ArrayList<>(totalRequests);
+
+        // Issue one request every 1/rate seconds, measured from the intended send time
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long firstSendNanos = System.nanoTime();
+        AtomicInteger sent = new AtomicInteger();
+        scheduler.scheduleAtFixedRate(() -> {
+            int index = sent.getAndIncrement();
+            if (index >= totalRequests) {
+                return;
+            }
+
+            // Every request carries its own idempotency key, so they all reach the gateway instead of replaying one result
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", UUID.randomUUID().toString())
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(REQUEST_BODY))
+                .build();
+
+            long intendedNanos = firstSendNanos + index * intervalNanos;
+            CompletableFuture<?> future = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, e) -> {
+                    latencies.set(index, System.nanoTime() - intendedNanos);
+                    completed.incrementAndGet();
+                    if (e != null || response.statusCode() >= 400) {
+                        errors.incrementAndGet();
+                    }
+                });
+            synchronized (requests) {
+                requests.add(future);
+            }
+        }, 0, intervalNanos, TimeUnit.NANOSECONDS);
+
+        while (sent.get() < totalRequests) {
+            Thread.sleep(100);
+        }
+        scheduler.shutdownNow();
+
+        CompletableFuture<?>[] pending;
+        synchronized (requests) {
+            pending = requests.toArray(new CompletableFuture<?>[0]);
+        }
+        CompletableFuture.allOf(pending).exceptionally(e -> null).join();
+
+        long[] result = new long[completed.get()];
+        for (int i = 0, j = 0; i < totalRequests && j < result.length; i++) {
+            if (latencies.get(i) > 0) {
+                result[j++] = latencies.get(i);
+            }
+        }
+        return new Result(result, errors.get());
+    }
+
+    private double percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1_000_000.0;
+    }
+
+    private record Result(long[] latencies, int errors) {
+    }
+}
@@ -0,0 +1,145 @@
+package com.yoanesber.order_payment_rabbitmq.publisher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yoanesber.order_payment_rabbitmq.metrics.PaymentMetrics;
+import com.yoanesber.order_payment_rabbitmq.tracing.RequestTracingFilter;
+import com.yoanesber.order_payment_rabbitmq.tracing.TraceHeaders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BatchingMessagePublisherTest {
+
+    private static final String EXCHANGE = "order.payment.exchange";
+
+    private static final String ROUTING_KEY = "order.payment.success";
+
+    private final RecordingConfirmTrackingPublisher confirmTrackingPublisher = new RecordingConfirmTrackingPublisher();
+
+    private final RequestTracingFilter requestTracingFilter = new RequestTracingFilter();
+
+    private BatchingMessagePublisher batchingMessagePublisher;
+
+    private MessagePublisher messagePublisher;
+
+    @BeforeEach
+    void setUp() {
+        batchingMessagePublisher = new BatchingMessagePublisher(confirmTrackingPublisher);
+        ReflectionTestUtils.setField(batchingMessagePublisher, "batchSize", 100);
+        ReflectionTestUtils.setField(batchingMessagePublisher, "bufferLimit", 65536);
+        batchingMessagePublisher.init();
+
+        messagePublisher = new MessagePublisher(new RabbitTemplate(), null, confirmTrackingPublisher, batchingMessagePublisher,
+            null, new PaymentMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(messagePublisher, "mode", "batch");
+        messagePublisher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        PublishContext.clear();
+    }
+
+    @Test
+    void batchesEventsPublishedInsideTracedRequests() throws Exception {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        List<String> traceIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String event = "payment-" + i;
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            // Publish as the asynchronous submission does: inside a traced request, with the payment handle set
+            requestTracingFilter.doFilter(new MockHttpServletRequest("POST", "/api/v1/order-payment/async"), response,
+                (request, res) -> {
+                    PublishContext.setHeader(PublishContext.PAYMENT_HANDLE_HEADER, "handle-" + event);
+                    futures.add(messagePublisher.publish(EXCHANGE, ROUTING_KEY, event));
+                });
+            traceIds.add(response.getHeader("X-Trace-Id"));
+        }
+
+        // Nothing is sent before the linger interval flushes the open batch
+        assertTrue(confirmTrackingPublisher.messages.isEmpty());
+        batchingMessagePublisher.flush();
+
+        assertEquals(1, confirmTrackingPublisher.messages.size());
+        Message batch = confirmTrackingPublisher.messages.get(0);
+        assertEquals(3, (Integer) batch.getMessageProperties().getHeader(AmqpHeaders.BATCH_SIZE));
+        futures.forEach(future -> assertTrue(future.isDone()));
+
+        List<Message> events = new ArrayList<>();
+        new RecordHeadersBatchingStrategy().deBatch(batch, events::add);
+
+        assertEquals(3, events.size());
+        assertNotEquals(traceIds.get(0), traceIds.get(1));
+        for (int i = 0; i < events.size(); i++) {
+            Message event = events.get(i);
+            assertEquals("payment-" + i, new String(event.getBody(), StandardCharsets.UTF_8));
+            assertEquals("handle-payment-" + i, event.getMessageProperties().getHeader(PublishContext.PAYMENT_HANDLE_HEADER));
+            assertEquals(traceIds.get(i), event.getMessageProperties().getHeader(TraceHeaders.TRACE_ID_HEADER));
+            assertNotNull(event.getMessageProperties().getHeader(TraceHeaders.REQUEST_START_HEADER));
+            assertNotNull(event.getMessageProperties().getHeader(TraceHeaders.PUBLISHED_AT_HEADER));
+            assertNull(event.getMessageProperties().getHeader(RecordHeadersBatchingStrategy.RECORD_HEADERS_HEADER));
+        }
+        assertTrue(events.get(2).getMessageProperties().isLastInBatch());
+    }
+
+    @Test
+    void sendsASingleEventWithoutBatchHeaders() {
+        CompletableFuture<Void> future = messagePublisher.publish(EXCHANGE, ROUTING_KEY, "payment-0");
+        batchingMessagePublisher.flush();
+
+        assertEquals(1, confirmTrackingPublisher.messages.size());
+        assertNull(confirmTrackingPublisher.messages.get(0).getMessageProperties().getHeader(AmqpHeaders.BATCH_SIZE));
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    void splitsBatchesAtTheByteBudget() {
+        // Without their headers all three events would fit into one batch
+        ReflectionTestUtils.setField(batchingMessagePublisher, "bufferLimit",
+            3 * RecordHeadersBatchingStrategy.sizeOf(new Message("payment-0".getBytes(StandardCharsets.UTF_8), new MessageProperties())));
+
+        PublishContext.setHeader(TraceHeaders.TRACE_ID_HEADER, TraceHeaders.newTraceId());
+        for (int i = 0; i < 3; i++) {
+            messagePublisher.publish(EXCHANGE, ROUTING_KEY, "payment-" + i);
+        }
+        batchingMessagePublisher.flush();
+
+        assertEquals(3, confirmTrackingPublisher.messages.size());
+    }
+
+    // Records what would be sent to the broker and confirms it right away
+    private static final class RecordingConfirmTrackingPublisher extends ConfirmTrackingPublisher {
+
+        private final List<Message> messages = new ArrayList<>();
+
+        private RecordingConfirmTrackingPublisher() {
+            super(null);
+        }
+
+        @Override
+        public CompletableFuture<Void> publishAsync(String exchangeName, String routingKey, Message message) {
+            messages.add(message);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
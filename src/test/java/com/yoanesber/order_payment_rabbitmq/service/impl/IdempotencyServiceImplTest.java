@@ -0,0 +1,152 @@
+package com.yoanesber.order_payment_rabbitmq.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yoanesber.order_payment_rabbitmq.service.IdempotencyInProgressException;
+import com.yoanesber.order_payment_rabbitmq.service.IdempotencyKeyMismatchException;
+
+class IdempotencyServiceImplTest {
+
+    private static final Map<String, String> REQUEST = Map.of("orderId", "ORD123456789");
+
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyServiceImpl(new ObjectMapper());
+        ReflectionTestUtils.setField(idempotencyService, "enabled", true);
+        ReflectionTestUtils.setField(idempotencyService, "maxSize", 100L);
+        ReflectionTestUtils.setField(idempotencyService, "expireAfterWrite", 60000L);
+        ReflectionTestUtils.setField(idempotencyService, "waitTimeout", 5000L);
+        idempotencyService.init();
+    }
+
+    @Test
+    void coalescesConcurrentCallsOntoTheFirstResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Object result = new Object();
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> idempotencyService.execute("key", REQUEST, () -> {
+            invocations.incrementAndGet();
+            started.countDown();
+            await(release);
+            return result;
+        }, r -> true));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> idempotencyService.execute("key", REQUEST, 
+            this::newResult, r -> true));
+        release.countDown();
+
+        assertSame(result, first.get(5, TimeUnit.SECONDS));
+        assertSame(result, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    void replaysACompletedResult() {
+        Object first = idempotencyService.execute("key", REQUEST, this::newResult, r -> true);
+        Object second = idempotencyService.execute("key", REQUEST, this::newResult, r -> true);
+
+        assertSame(first, second);
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    void evictsAFailedResultSoTheRetryRunsAgain() {
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("key", REQUEST, () -> {
+            invocations.incrementAndGet();
+            throw new IllegalStateException("Gateway unavailable");
+        }, r -> true));
+
+        idempotencyService.execute("key", REQUEST, this::newResult, r -> true);
+        assertEquals(2, invocations.get());
+    }
+
+    @Test
+    void evictsAResultThatFailedWithAnError() {
+        assertThrows(AssertionError.class, () -> idempotencyService.execute("key", REQUEST, () -> {
+            invocations.incrementAndGet();
+            throw new AssertionError("Unexpected");
+        }, r -> true));
+
+        idempotencyService.execute("key", REQUEST, this::newResult, r -> true);
+        assertEquals(2, invocations.get());
+    }
+
+    @Test
+    void doesNotReplayAResultThatIsNotCacheable() {
+        idempotencyService.execute("key", REQUEST, this::newResult, r -> false);
+        idempotencyService.execute("key", REQUEST, this::newResult, r -> false);
+
+        assertEquals(2, invocations.get());
+    }
+
+    @Test
+    void rejectsAKeyReusedWithADifferentRequest() {
+        idempotencyService.execute("key", REQUEST, this::newResult, r -> true);
+
+        assertThrows(IdempotencyKeyMismatchException.class, () -> idempotencyService.execute("key", 
+            Map.of("orderId", "ORD987654321"), this::newResult, r -> true));
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    void stopsWaitingForAnInFlightResultAfterTheWaitTimeout() throws Exception {
+        ReflectionTestUtils.setField(idempotencyService, "waitTimeout", 50L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> idempotencyService.execute("key", REQUEST, () -> {
+            started.countDown();
+            await(release);
+            return new Object();
+        }, r -> true));
+
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertThrows(IdempotencyInProgressException.class, () -> idempotencyService.execute("key", REQUEST, 
+                this::newResult, r -> true));
+        } finally {
+            release.countDown();
+        }
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void runsEveryCallWithoutAKey() {
+        idempotencyService.execute(null, REQUEST, this::newResult, r -> true);
+        idempotencyService.execute(null, REQUEST, this::newResult, r -> true);
+
+        assertEquals(2, invocations.get());
+    }
+
+    private Object newResult() {
+        invocations.incrementAndGet();
+        return new Object();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
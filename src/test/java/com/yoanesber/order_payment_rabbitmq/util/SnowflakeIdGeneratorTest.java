@@ -0,0 +1,119 @@
+package com.yoanesber.order_payment_rabbitmq.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SnowflakeIdGeneratorTest {
+
+    // 2025-06-15T00:00:00Z, after the generator's epoch
+    private final AtomicLong clock = new AtomicLong(1749945600000L);
+
+    @Test
+    void generatesUniqueIdsUnderConcurrency() throws Exception {
+        SnowflakeIdGenerator idGenerator = newIdGenerator(System::currentTimeMillis, 1, 5000);
+        int threads = 8;
+        int idsPerThread = 50_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < idsPerThread; j++) {
+                        ids.add(idGenerator.nextId());
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * idsPerThread, ids.size());
+    }
+
+    @Test
+    void keepsIdsIncreasingWhenTheClockStepsBackwards() {
+        SnowflakeIdGenerator idGenerator = newIdGenerator(clock::get, 1, 5000);
+
+        long before = idGenerator.nextId();
+        clock.addAndGet(-1000);
+        long after = idGenerator.nextId();
+        long later = idGenerator.nextId();
+
+        assertTrue(after > before);
+        assertTrue(later > after);
+    }
+
+    @Test
+    void failsWhenTheClockStepsBackBeyondTheMaxSkew() {
+        SnowflakeIdGenerator idGenerator = newIdGenerator(clock::get, 1, 5000);
+
+        idGenerator.nextId();
+        clock.addAndGet(-10_000);
+
+        assertThrows(IllegalStateException.class, idGenerator::nextId);
+    }
+
+    @Test
+    void borrowsTheNextMillisecondWhenTheSequenceIsExhausted() {
+        SnowflakeIdGenerator idGenerator = newIdGenerator(clock::get, 1, 5000);
+
+        // The clock stands still, so the 4097th id must carry into the next millisecond
+        long previous = idGenerator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            long next = idGenerator.nextId();
+            assertTrue(next > previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void encodesTheNodeId() {
+        SnowflakeIdGenerator idGenerator = newIdGenerator(clock::get, 513, 5000);
+
+        long id = idGenerator.nextId();
+
+        assertTrue(id > 0);
+        assertEquals(513, (id >>> 12) & 1023);
+    }
+
+    @Test
+    void rejectsANodeIdOutOfRange() {
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(clock::get);
+        ReflectionTestUtils.setField(idGenerator, "nodeId", 1024L);
+        ReflectionTestUtils.setField(idGenerator, "maxClockSkew", 5000L);
+
+        assertThrows(IllegalArgumentException.class, idGenerator::init);
+    }
+
+    private static SnowflakeIdGenerator newIdGenerator(LongSupplier clock, long nodeId, long maxClockSkew) {
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(clock);
+        ReflectionTestUtils.setField(idGenerator, "nodeId", nodeId);
+        ReflectionTestUtils.setField(idGenerator, "maxClockSkew", maxClockSkew);
+        idGenerator.init();
+        return idGenerator;
+    }
+}